@@ -0,0 +1,149 @@
+package com.company.ordertracking.audit;
+
+import com.company.ordertracking.entity.AuditLog;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Monthly audit archives: one gzip-compressed NDJSON file per month ({@code audit-2025-01.ndjson.gz}) holding
+ * the rows of a dropped audit_logs partition, newest first, one {@link AuditLogService#toRecord} object per line.
+ * <p>
+ * Archives are not indexed; {@link #read} scans the month's file and filters in memory.
+ */
+@Component
+public class AuditArchive {
+
+    private static final TypeReference<LinkedHashMap<String, Object>> RECORD = new TypeReference<>() {};
+
+    private final Path dir;
+    private final ObjectMapper objectMapper;
+
+    public AuditArchive(@Value("${app.audit.archive.dir:audit-archive}") String dir, ObjectMapper objectMapper) {
+        this.dir = Paths.get(dir).toAbsolutePath().normalize();
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Row filter for archived records; same meaning as the parameters of {@link AuditLogService#search}
+     * (q is a plain case-insensitive substring match here).
+     */
+    public record Filter(String q, String action, String username, String status,
+                         LocalDateTime from, LocalDateTime to) {
+
+        boolean test(Map<String, Object> r) {
+            if (q != null && !q.isBlank()) {
+                String needle = q.trim().toLowerCase(Locale.ROOT);
+                boolean hit = Stream.of("username", "action", "target", "status", "ip", "details")
+                        .map(r::get)
+                        .anyMatch(v -> v != null && v.toString().toLowerCase(Locale.ROOT).contains(needle));
+                if (!hit) return false;
+            }
+            if (action != null && !action.isBlank() && !action.trim().equalsIgnoreCase(str(r.get("action")))) return false;
+            if (username != null && !username.isBlank() && !username.trim().equals(r.get("username"))) return false;
+            if (status != null && !status.isBlank() && !status.trim().equalsIgnoreCase(str(r.get("status")))) return false;
+            LocalDateTime at = createdAt(r);
+            if (from != null && (at == null || at.isBefore(from))) return false;
+            if (to != null && (at == null || at.isAfter(to))) return false;
+            return true;
+        }
+    }
+
+    public List<YearMonth> months() throws IOException {
+        if (!Files.isDirectory(dir)) return List.of();
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(p -> p.getFileName().toString())
+                    .filter(n -> n.matches("audit-\\d{4}-\\d{2}\\.ndjson\\.gz"))
+                    .map(n -> YearMonth.parse(n.substring("audit-".length(), "audit-".length() + 7)))
+                    .sorted(Comparator.reverseOrder())
+                    .toList();
+        }
+    }
+
+    public boolean exists(YearMonth month) {
+        return Files.exists(file(month));
+    }
+
+    /**
+     * Writes (or rewrites) a month's archive. The rows must come newest first; the file only appears once complete.
+     *
+     * @return number of rows written
+     */
+    long write(YearMonth month, Iterator<AuditLog> rows) throws IOException {
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, "audit-" + month + "-", ".tmp");
+        long n = 0;
+        try {
+            try (OutputStream fileOut = Files.newOutputStream(tmp);
+                 Writer out = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(fileOut, 64 * 1024), StandardCharsets.UTF_8))) {
+                while (rows.hasNext()) {
+                    out.write(objectMapper.writeValueAsString(AuditLogService.toRecord(rows.next())));
+                    out.write('\n');
+                    n++;
+                }
+            }
+            // on disk before it replaces anything: the partition is dropped right after this returns
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                ch.force(true);
+            }
+            Files.move(tmp, file(month), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return n;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Up to {@code limit} matching records of one archived month, strictly after (afterCreatedAt, afterId) in
+     * newest-first order (pass nulls for the first page). Empty when the month has no archive.
+     */
+    public List<Map<String, Object>> read(YearMonth month, Filter filter,
+                                          LocalDateTime afterCreatedAt, Long afterId, int limit) throws IOException {
+        Path file = file(month);
+        if (!Files.exists(file)) return List.of();
+        List<Map<String, Object>> out = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file), 64 * 1024), StandardCharsets.UTF_8))) {
+            String line;
+            while (out.size() < limit && (line = in.readLine()) != null) {
+                if (line.isBlank()) continue;
+                Map<String, Object> r = objectMapper.readValue(line, RECORD);
+                if (afterCreatedAt != null && afterId != null && !isAfter(r, afterCreatedAt, afterId)) continue;
+                if (filter == null || filter.test(r)) out.add(r);
+            }
+        }
+        return out;
+    }
+
+    private Path file(YearMonth month) {
+        return dir.resolve("audit-" + month + ".ndjson.gz");
+    }
+
+    private static boolean isAfter(Map<String, Object> r, LocalDateTime createdAt, long id) {
+        LocalDateTime at = createdAt(r);
+        long rowId = ((Number) r.get("id")).longValue();
+        if (at == null) return false;
+        return at.isBefore(createdAt) || (at.isEqual(createdAt) && rowId < id);
+    }
+
+    static LocalDateTime createdAt(Map<String, Object> r) {
+        Object v = r.get("createdAt");
+        return v == null ? null : LocalDateTime.parse(v.toString());
+    }
+
+    private static String str(Object v) {
+        return v == null ? null : v.toString();
+    }
+}
@@ -0,0 +1,286 @@
+package com.company.ordertracking.audit;
+
+import com.company.ordertracking.entity.AuditLog;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only local journal for audit entries, split into numbered segment files
+ * ({@code audit-0000000000000001.log}, ...).
+ * <p>
+ * Frame layout: {@code [int payloadLength][int crc32(payload)][payload]}. A frame that is short or fails its
+ * CRC marks the torn tail of a segment written during a crash; reading continues with the next segment.
+ * Every process start opens a fresh segment, so an existing file is never appended to again.
+ * <p>
+ * {@link #append} returns once the frame is on disk. fsyncs are grouped: callers that arrive while another
+ * caller's force() is in progress are covered by the next single force().
+ * <p>
+ * Positions only mean something for the journal that wrote them, so the replay checkpoint is kept per journal, under
+ * the random id stored in {@code journal.id} next to the segments.
+ */
+class AuditJournal implements Closeable {
+
+    /** Position of the next unread frame. */
+    record Position(long segment, long offset) {}
+
+    record Batch(List<AuditLog> entries, Position next) {}
+
+    private static final String ID_FILE = "journal.id";
+
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_FRAME_BYTES = 16 * 1024 * 1024;
+
+    private final Path dir;
+    private final long segmentBytes;
+
+    private final Object appendLock = new Object();
+    private final Object syncLock = new Object();
+    private FileChannel active;
+    private long activeSegment;
+    private volatile long activeSize; // bytes of complete frames in the active segment
+    private long writtenSeq;
+    private volatile long syncedSeq;
+
+    /**
+     * Id of the journal in {@code dir}, created (and fsynced) on first use.
+     */
+    static String identify(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        Path file = dir.resolve(ID_FILE);
+        if (Files.exists(file)) return Files.readString(file, StandardCharsets.UTF_8).trim();
+        String id = UUID.randomUUID().toString();
+        Path tmp = dir.resolve(ID_FILE + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer buf = ByteBuffer.wrap(id.getBytes(StandardCharsets.UTF_8));
+            while (buf.hasRemaining()) ch.write(buf);
+            ch.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+        return id;
+    }
+
+    AuditJournal(Path dir, long segmentBytes, long minSegment) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(dir);
+        long last = segments().stream().mapToLong(Long::longValue).max().orElse(0L);
+        openSegment(Math.max(last, minSegment) + 1);
+    }
+
+    /**
+     * Appends one entry and returns once it has been fsynced.
+     */
+    void append(AuditLog entry) throws IOException {
+        ByteBuffer frame = frame(encode(entry));
+        long seq;
+        synchronized (appendLock) {
+            if (activeSize > 0 && activeSize + frame.remaining() > segmentBytes) {
+                active.force(false);
+                active.close();
+                openSegment(activeSegment + 1);
+            }
+            while (frame.hasRemaining()) active.write(frame);
+            activeSize = active.position();
+            seq = ++writtenSeq;
+        }
+        sync(seq);
+    }
+
+    private void sync(long seq) throws IOException {
+        if (syncedSeq >= seq) return;
+        synchronized (syncLock) {
+            if (syncedSeq >= seq) return;
+            FileChannel ch;
+            long upTo;
+            synchronized (appendLock) {
+                ch = active;
+                upTo = writtenSeq;
+            }
+            try {
+                ch.force(false);
+            } catch (ClosedChannelException e) {
+                // rolled over in the meantime; the old segment was forced before it was closed
+            }
+            syncedSeq = upTo;
+        }
+    }
+
+    /**
+     * Reads up to {@code max} entries starting at {@code from}. Never reads past the complete frames of the
+     * active segment. Returns an empty batch (with a possibly advanced position) when there is nothing new.
+     */
+    Batch read(Position from, int max) throws IOException {
+        List<AuditLog> out = new ArrayList<>();
+        long segment = from.segment();
+        long offset = from.offset();
+        while (out.size() < max) {
+            long current;
+            long limit;
+            synchronized (appendLock) {
+                current = activeSegment;
+                limit = activeSize;
+            }
+            if (segment > current) break;
+            Path file = segmentFile(segment);
+            if (segment < current && !Files.exists(file)) {
+                // already deleted or never existed (e.g. the journal dir was cleaned); move on
+                segment = nextSegment(segment, current);
+                offset = 0;
+                continue;
+            }
+            boolean closed = segment < current;
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                long end = closed ? ch.size() : limit;
+                offset = readFrames(ch, offset, end, max, out);
+                if (out.size() >= max || !closed) break;
+            }
+            segment = nextSegment(segment, current);
+            offset = 0;
+        }
+        return new Batch(out, new Position(segment, offset));
+    }
+
+    private static long readFrames(FileChannel ch, long offset, long end, int max, List<AuditLog> out) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (out.size() < max && offset + HEADER_BYTES <= end) {
+            header.clear();
+            readFully(ch, header, offset);
+            header.flip();
+            int len = header.getInt();
+            int crc = header.getInt();
+            if (len < 0 || len > MAX_FRAME_BYTES || offset + HEADER_BYTES + len > end) return end; // torn tail
+            ByteBuffer payload = ByteBuffer.allocate(len);
+            readFully(ch, payload, offset + HEADER_BYTES);
+            if (crc32(payload.array()) != crc) return end;
+            out.add(decode(payload.array()));
+            offset += HEADER_BYTES + len;
+        }
+        return offset;
+    }
+
+    /**
+     * Removes segments that lie entirely before {@code position}.
+     */
+    void deleteBefore(Position position) throws IOException {
+        for (long s : segments()) {
+            if (s < position.segment()) Files.deleteIfExists(segmentFile(s));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (appendLock) {
+            if (active.isOpen()) {
+                active.force(false);
+                active.close();
+            }
+        }
+    }
+
+    private void openSegment(long segment) throws IOException {
+        active = FileChannel.open(segmentFile(segment),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        activeSegment = segment;
+        activeSize = 0;
+    }
+
+    private long nextSegment(long after, long current) throws IOException {
+        return segments().stream().mapToLong(Long::longValue).filter(s -> s > after).min().orElse(current);
+    }
+
+    private List<Long> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(p -> p.getFileName().toString())
+                    .filter(n -> n.startsWith("audit-") && n.endsWith(".log"))
+                    .map(n -> n.substring("audit-".length(), n.length() - ".log".length()))
+                    .filter(n -> n.chars().allMatch(Character::isDigit) && !n.isEmpty())
+                    .map(Long::parseLong)
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path segmentFile(long segment) {
+        return dir.resolve(String.format("audit-%016d.log", segment));
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, position + buf.position());
+            if (n < 0) throw new EOFException();
+        }
+    }
+
+    private static ByteBuffer frame(byte[] payload) {
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        buf.putInt(payload.length).putInt(crc32(payload)).put(payload).flip();
+        return buf;
+    }
+
+    private static int crc32(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] encode(AuditLog a) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeString(out, a.getCreatedAt() == null ? null : a.getCreatedAt().toString());
+            writeString(out, a.getUsername());
+            writeString(out, a.getRole());
+            writeString(out, a.getAction());
+            writeString(out, a.getTarget());
+            writeString(out, a.getStatus());
+            writeString(out, a.getIp());
+            writeString(out, a.getDetails());
+        }
+        return bytes.toByteArray();
+    }
+
+    private static AuditLog decode(byte[] payload) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            AuditLog a = new AuditLog();
+            String createdAt = readString(in);
+            a.setCreatedAt(createdAt == null ? null : LocalDateTime.parse(createdAt));
+            a.setUsername(readString(in));
+            a.setRole(readString(in));
+            a.setAction(readString(in));
+            a.setTarget(readString(in));
+            a.setStatus(readString(in));
+            a.setIp(readString(in));
+            a.setDetails(readString(in));
+            return a;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len < 0) return null;
+        byte[] b = new byte[len];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
@@ -1,25 +1,49 @@
 package com.company.ordertracking.audit;
 
 import com.company.ordertracking.entity.AuditLog;
+import com.company.ordertracking.entity.AuditLogText;
+import com.company.ordertracking.repo.AuditLogFullTextFunction;
 import com.company.ordertracking.repo.AuditLogRepository;
 import com.company.ordertracking.security.SecurityUtil;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
 import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Locale;
+import java.util.stream.Stream;
 
 @Service
 public class AuditLogService {
 
+    /** InnoDB's default innodb_ft_min_token_size; shorter words are not in the FULLTEXT index. */
+    private static final int MIN_FULLTEXT_TOKEN = 3;
+
+    public static final Sort NEWEST_FIRST =
+            Sort.by(Sort.Direction.DESC, "createdAt").and(Sort.by(Sort.Direction.DESC, "id"));
+
     private final AuditLogRepository repo;
+    private final AuditWriter writer;
+    private final boolean fullTextSearch;
 
-    public AuditLogService(AuditLogRepository repo) {
+    public AuditLogService(AuditLogRepository repo, AuditWriter writer,
+                           @Value("${app.audit.search.fulltext:true}") boolean fullTextSearch) {
         this.repo = repo;
+        this.writer = writer;
+        this.fullTextSearch = fullTextSearch;
     }
 
     public enum Status {
@@ -35,28 +59,60 @@ public class AuditLogService {
         logWithPrincipal(request, username, role, action, target, status, details);
     }
 
+    /**
+     * For work that runs outside the request thread (e.g. import jobs): the caller captured user/role/ip up front.
+     */
+    public void logDetached(String username, String role, String ip, String action, String target, Status status, String details) {
+        save(username, role, ip, action, target, status, details);
+    }
+
     private void logWithPrincipal(HttpServletRequest request, String username, String role, String action, String target, Status status, String details) {
+        save(username, role, extractIp(request), action, target, status, details);
+    }
+
+    private void save(String username, String role, String ip, String action, String target, Status status, String details) {
         try {
             AuditLog a = new AuditLog();
+            // stamp the event time now; the row itself is written later by the AuditWriter thread
+            a.setCreatedAt(LocalDateTime.now());
             a.setUsername(username);
             a.setRole(role);
             a.setAction(normalize(action));
             a.setTarget(target);
             a.setStatus(status == null ? Status.SUCCESS.name() : status.name());
-            a.setIp(extractIp(request));
+            a.setIp(ip);
             a.setDetails(details);
-            repo.save(a);
+            if (TransactionSynchronizationManager.isSynchronizationActive()
+                    && TransactionSynchronizationManager.isActualTransactionActive()) {
+                // the entry describes the caller's change: hand it over only once that change has committed
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        submit(a);
+                    }
+                });
+            } else {
+                writer.submit(a);
+            }
         } catch (Exception ignored) {
             // Do not break business flow if logging fails.
         }
     }
 
+    private void submit(AuditLog a) {
+        try {
+            writer.submit(a);
+        } catch (Exception ignored) {
+            // the business change has committed; a failed audit write must not turn it into an error
+        }
+    }
+
     private static String normalize(String s) {
         if (s == null) return "UNKNOWN";
         return s.trim().toUpperCase(Locale.ROOT);
     }
 
-    private static String extractIp(HttpServletRequest request) {
+    public static String extractIp(HttpServletRequest request) {
         if (request == null) return null;
         String xf = request.getHeader("X-Forwarded-For");
         if (xf != null && !xf.isBlank()) {
@@ -77,8 +133,66 @@ public class AuditLogService {
                                  LocalDateTime from,
                                  LocalDateTime to,
                                  Pageable pageable) {
+        return repo.findAll(filter(q, action, username, status, from, to), pageable);
+    }
+
+    /**
+     * Keyset variant of {@link #search}: up to {@code limit} rows strictly after (afterCreatedAt, afterId),
+     * newest first, with no count query and no OFFSET. Pass nulls for the first page.
+     */
+    @Transactional(readOnly = true)
+    public List<AuditLog> searchAfter(String q,
+                                      String action,
+                                      String username,
+                                      String status,
+                                      LocalDateTime from,
+                                      LocalDateTime to,
+                                      LocalDateTime afterCreatedAt,
+                                      Long afterId,
+                                      int limit) {
+        Specification<AuditLog> spec = filter(q, action, username, status, from, to);
+        if (afterCreatedAt != null && afterId != null) {
+            spec = spec.and((root, query, cb) -> cb.or(
+                    cb.lessThan(root.get("createdAt"), afterCreatedAt),
+                    cb.and(cb.equal(root.get("createdAt"), afterCreatedAt), cb.lessThan(root.get("id"), afterId))
+            ));
+        }
+        return repo.findBy(spec, query -> query.sortBy(NEWEST_FIRST).limit(limit).all());
+    }
+
+    /**
+     * All rows matching the {@link #search} filters, newest first, read through a DB cursor for exports.
+     * The caller must consume and close the stream inside its own (read-only) transaction.
+     */
+    public Stream<AuditLog> stream(String q,
+                                   String action,
+                                   String username,
+                                   String status,
+                                   LocalDateTime from,
+                                   LocalDateTime to) {
+        return repo.stream(filter(q, action, username, status, from, to));
+    }
+
+    private Specification<AuditLog> filter(String q,
+                                           String action,
+                                           String username,
+                                           String status,
+                                           LocalDateTime from,
+                                           LocalDateTime to) {
         Specification<AuditLog> spec = Specification.where(null);
-        if (q != null && !q.isBlank()) {
+        String fullText = fullTextSearch ? toBooleanQuery(q) : null;
+        if (fullText != null) {
+            // the FULLTEXT index lives on audit_logs_text (partitioned tables cannot have one)
+            spec = spec.and((root, query, cb) -> {
+                Subquery<Long> matches = query.subquery(Long.class);
+                Root<AuditLogText> text = matches.from(AuditLogText.class);
+                matches.select(text.get("id")).where(cb.greaterThan(
+                        cb.function(AuditLogFullTextFunction.NAME, Double.class, text.get("content"), cb.literal(fullText)),
+                        0.0));
+                return root.get("id").in(matches);
+            });
+        } else if (q != null && !q.isBlank()) {
+            // nothing indexable in q (only short words): fall back to the substring scan
             String like = "%" + q.trim().toLowerCase(Locale.ROOT) + "%";
             spec = spec.and((root, query, cb) -> cb.or(
                     cb.like(cb.lower(root.get("username")), like),
@@ -86,7 +200,8 @@ public class AuditLogService {
                     cb.like(cb.lower(root.get("target")), like),
                     cb.like(cb.lower(root.get("status")), like),
                     cb.like(cb.lower(root.get("ip")), like),
-                    cb.like(cb.lower(root.get("details")), like)
+                    // details is a @Lob (CLOB): Hibernate rejects lower() on it; the _ci collation matches case-insensitively anyway
+                    cb.like(root.get("details").as(String.class), like)
             ));
         }
         if (action != null && !action.isBlank()) {
@@ -107,6 +222,41 @@ public class AuditLogService {
         if (to != null) {
             spec = spec.and((root, query, cb) -> cb.lessThanOrEqualTo(root.get("createdAt"), to));
         }
-        return repo.findAll(spec, pageable);
+        return spec;
+    }
+
+    /**
+     * JSON shape of one audit row, shared by the API and the NDJSON archives.
+     */
+    public static Map<String, Object> toRecord(AuditLog a) {
+        // not Map.of: username / target / ip / details are often null
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("id", a.getId());
+        m.put("createdAt", a.getCreatedAt() == null ? null : a.getCreatedAt().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        m.put("username", a.getUsername());
+        m.put("role", a.getRole());
+        m.put("action", a.getAction());
+        m.put("target", a.getTarget());
+        m.put("status", a.getStatus());
+        m.put("ip", a.getIp());
+        m.put("details", a.getDetails());
+        return m;
+    }
+
+    /**
+     * Turns free text into a MATCH ... AGAINST boolean-mode query: every word of at least
+     * {@link #MIN_FULLTEXT_TOKEN} characters is required and matched as a prefix ("ship" finds SHIP_CONFIRM).
+     * Returns null when q has no such word. Only letters, digits and '_' survive, so the result carries no
+     * boolean-mode operators from the user and is safe as the (inlined) criteria literal.
+     */
+    static String toBooleanQuery(String q) {
+        if (q == null) return null;
+        StringBuilder sb = new StringBuilder();
+        for (String token : q.trim().split("[^\\p{L}\\p{N}_]+")) {
+            if (token.length() < MIN_FULLTEXT_TOKEN) continue;
+            if (sb.length() > 0) sb.append(' ');
+            sb.append('+').append(token).append('*');
+        }
+        return sb.length() == 0 ? null : sb.toString();
     }
 }
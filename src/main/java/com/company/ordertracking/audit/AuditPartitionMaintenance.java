@@ -0,0 +1,220 @@
+package com.company.ordertracking.audit;
+
+import com.company.ordertracking.entity.AuditLog;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.jpa.HibernateHints;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the monthly partitions of audit_logs (V17) in shape:
+ * <ul>
+ *   <li>splits {@code pmax} so that partitions exist {@code months-ahead} months into the future;</li>
+ *   <li>partitions older than {@code retention.months} are exported to {@link AuditArchive}, then dropped
+ *       (dropping a partition is a metadata operation, unlike DELETE), and their audit_logs_text rows removed.</li>
+ * </ul>
+ * Runs once at startup and then daily. With several instances only one runs it at a time: the run holds the MySQL
+ * named lock {@value #LOCK_NAME} on a connection of its own (released with that connection if the instance dies), and
+ * the others skip their run. Any instance may be the one that archives, so {@code app.audit.archive.dir} must be
+ * shared storage for {@link AuditArchive} to find every month.
+ */
+@Component
+public class AuditPartitionMaintenance {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditPartitionMaintenance.class);
+
+    static final String LOCK_NAME = "audit_partition_maintenance";
+
+    private static final DateTimeFormatter PARTITION_MONTH = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final int TEXT_DELETE_BATCH = 10_000;
+    /** MySQL streams the result set row by row only with this fetch size (see SalesOrderRepositoryImpl). */
+    private static final int STREAMING_FETCH_SIZE = Integer.MIN_VALUE;
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private final AuditArchive archive;
+    private final DataSource dataSource;
+    private final TransactionTemplate txTemplate;
+    private final TransactionTemplate readOnlyTx;
+    private final boolean enabled;
+    private final int monthsAhead;
+    private final int retentionMonths;
+
+    public AuditPartitionMaintenance(AuditArchive archive,
+                                     DataSource dataSource,
+                                     PlatformTransactionManager txManager,
+                                     @Value("${app.audit.partitions.enabled:true}") boolean enabled,
+                                     @Value("${app.audit.partitions.months-ahead:3}") int monthsAhead,
+                                     @Value("${app.audit.retention.months:12}") int retentionMonths) {
+        this.archive = archive;
+        this.dataSource = dataSource;
+        this.txTemplate = new TransactionTemplate(txManager);
+        this.readOnlyTx = new TransactionTemplate(txManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.enabled = enabled;
+        this.monthsAhead = Math.max(1, monthsAhead);
+        this.retentionMonths = retentionMonths;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintain();
+    }
+
+    @Scheduled(cron = "${app.audit.partitions.cron:0 30 3 * * *}")
+    public void maintain() {
+        if (!enabled) return;
+        try (Connection lock = dataSource.getConnection()) {
+            if (!acquire(lock)) {
+                log.info("Audit partition maintenance is running on another instance; skipping");
+                return;
+            }
+            try {
+                maintainPartitions();
+            } finally {
+                release(lock);
+            }
+        } catch (Exception e) {
+            log.warn("Audit partition maintenance failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private void maintainPartitions() throws IOException {
+        List<String> partitions = partitions();
+        if (partitions.isEmpty()) {
+            log.warn("audit_logs is not partitioned; skipping partition maintenance");
+            return;
+        }
+        addFuturePartitions(partitions);
+        if (retentionMonths > 0) dropExpiredPartitions(partitions);
+    }
+
+    /** GET_LOCK without waiting: 1 = acquired, 0 = held by another session. */
+    private static boolean acquire(Connection c) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement("SELECT GET_LOCK(?, 0)")) {
+            ps.setString(1, LOCK_NAME);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+    }
+
+    private static void release(Connection c) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            ps.setString(1, LOCK_NAME);
+            ps.executeQuery().close();
+        }
+    }
+
+    private void addFuturePartitions(List<String> partitions) {
+        if (!partitions.contains("pmax")) {
+            log.warn("audit_logs has no pmax partition; cannot add future partitions");
+            return;
+        }
+        YearMonth last = partitions.stream().map(AuditPartitionMaintenance::monthOf)
+                .filter(Objects::nonNull).max(YearMonth::compareTo).orElse(YearMonth.now().minusMonths(1));
+        YearMonth target = YearMonth.now().plusMonths(monthsAhead);
+        if (!last.isBefore(target)) return;
+
+        List<String> defs = new ArrayList<>();
+        for (YearMonth m = last.plusMonths(1); !m.isAfter(target); m = m.plusMonths(1)) {
+            defs.add("PARTITION " + partitionName(m) + " VALUES LESS THAN ('" + m.plusMonths(1).atDay(1) + "')");
+        }
+        defs.add("PARTITION pmax VALUES LESS THAN (MAXVALUE)");
+        // pmax only ever holds rows from beyond the last month, so splitting it is cheap
+        execute("ALTER TABLE audit_logs REORGANIZE PARTITION pmax INTO (" + String.join(", ", defs) + ")");
+        log.info("Added audit_logs partitions up to {}", target);
+    }
+
+    private void dropExpiredPartitions(List<String> partitions) throws IOException {
+        YearMonth keepFrom = YearMonth.now().minusMonths(retentionMonths);
+        for (String name : partitions) { // ordinal order, i.e. oldest first
+            YearMonth month = monthOf(name);
+            if (month == null || !month.isBefore(keepFrom)) continue;
+
+            long rows = export(name, month);
+            execute("ALTER TABLE audit_logs DROP PARTITION " + name);
+            long texts = deleteTextBefore(month.plusMonths(1));
+            log.info("Archived and dropped audit_logs partition {} ({} rows, {} search rows removed)", name, rows, texts);
+        }
+    }
+
+    private long export(String partition, YearMonth month) throws IOException {
+        try {
+            return readOnlyTx.execute(tx -> {
+                @SuppressWarnings("unchecked")
+                Stream<AuditLog> rows = em.createNativeQuery(
+                                "SELECT * FROM audit_logs PARTITION (" + partition + ") ORDER BY created_at DESC, id DESC",
+                                AuditLog.class)
+                        .setHint(HibernateHints.HINT_FETCH_SIZE, STREAMING_FETCH_SIZE)
+                        .getResultStream();
+                try (rows) {
+                    // detach as we go so the persistence context does not grow with the month
+                    return archive.write(month, rows.peek(em::detach).iterator());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private long deleteTextBefore(YearMonth month) {
+        long total = 0;
+        while (true) {
+            Integer n = txTemplate.execute(tx -> em.createNativeQuery(
+                            "DELETE FROM audit_logs_text WHERE created_at < ?1 LIMIT " + TEXT_DELETE_BATCH)
+                    .setParameter(1, month.atDay(1).atStartOfDay())
+                    .executeUpdate());
+            total += n == null ? 0 : n;
+            if (n == null || n < TEXT_DELETE_BATCH) return total;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> partitions() {
+        return txTemplate.execute(tx -> (List<String>) em.createNativeQuery(
+                        "SELECT PARTITION_NAME FROM information_schema.PARTITIONS "
+                                + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'audit_logs' "
+                                + "AND PARTITION_NAME IS NOT NULL ORDER BY PARTITION_ORDINAL_POSITION")
+                .getResultList());
+    }
+
+    private void execute(String ddl) {
+        txTemplate.executeWithoutResult(tx -> em.createNativeQuery(ddl).executeUpdate());
+    }
+
+    static String partitionName(YearMonth month) {
+        return "p" + month.format(PARTITION_MONTH);
+    }
+
+    /** Month of a pYYYYMM partition; null for pmax or anything else. */
+    static YearMonth monthOf(String partition) {
+        if (partition == null || !partition.matches("p\\d{6}")) return null;
+        return YearMonth.parse(partition.substring(1), PARTITION_MONTH);
+    }
+}
@@ -0,0 +1,140 @@
+package com.company.ordertracking.audit;
+
+import com.company.ordertracking.entity.AuditLog;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * Hourly audit counters in audit_rollup_hourly (V18), keyed by hour x action x username x status.
+ * <p>
+ * {@link #add} runs inside the AuditWriter transaction that inserts the rows, so counters and audit_logs never
+ * drift apart (and journal replay, being exactly-once, counts every entry once). The rollups are not touched by
+ * partition retention: stats keep covering months whose raw rows were archived.
+ */
+@Component
+public class AuditRollups {
+
+    /** Dimension to group {@link #stats} by. */
+    public enum GroupBy {
+        HOUR("bucket_hour"),
+        DAY("DATE(bucket_hour)"),
+        ACTION("action"),
+        USERNAME("username"),
+        STATUS("status");
+
+        private final String sql;
+
+        GroupBy(String sql) {
+            this.sql = sql;
+        }
+    }
+
+    public record Bucket(Object key, long count) {}
+
+    private record Key(LocalDateTime hour, String action, String username, String status) {}
+
+    @PersistenceContext
+    private EntityManager em;
+
+    /**
+     * Adds one count per entry. Must run inside the transaction that persists the entries.
+     */
+    void add(Collection<AuditLog> entries) {
+        Map<Key, Long> counts = new LinkedHashMap<>();
+        for (AuditLog a : entries) {
+            LocalDateTime at = a.getCreatedAt() == null ? LocalDateTime.now() : a.getCreatedAt();
+            counts.merge(new Key(at.truncatedTo(ChronoUnit.HOURS), a.getAction(),
+                    a.getUsername() == null ? "" : a.getUsername(), a.getStatus()), 1L, Long::sum);
+        }
+        if (counts.isEmpty()) return;
+        // one multi-row upsert per batch; the key columns are NOT NULL, so a missing username is stored as ''
+        StringBuilder sql = new StringBuilder(
+                "INSERT INTO audit_rollup_hourly (bucket_hour, action, username, status, cnt) VALUES ");
+        int i = 0;
+        for (int n = 0; n < counts.size(); n++) {
+            if (n > 0) sql.append(", ");
+            sql.append("(?").append(++i).append(", ?").append(++i).append(", ?").append(++i)
+                    .append(", ?").append(++i).append(", ?").append(++i).append(')');
+        }
+        sql.append(" ON DUPLICATE KEY UPDATE cnt = cnt + VALUES(cnt)");
+        Query q = em.createNativeQuery(sql.toString());
+        i = 0;
+        for (Map.Entry<Key, Long> e : counts.entrySet()) {
+            Key k = e.getKey();
+            q.setParameter(++i, Timestamp.valueOf(k.hour()));
+            q.setParameter(++i, k.action());
+            q.setParameter(++i, k.username());
+            q.setParameter(++i, k.status());
+            q.setParameter(++i, e.getValue());
+        }
+        q.executeUpdate();
+    }
+
+    /**
+     * Takes back the count of a deleted audit row.
+     */
+    @Transactional
+    public void remove(AuditLog a) {
+        if (a.getCreatedAt() == null) return;
+        em.createNativeQuery("UPDATE audit_rollup_hourly SET cnt = cnt - 1 WHERE bucket_hour = ?1 AND action = ?2 "
+                        + "AND username = ?3 AND status = ?4 AND cnt > 0")
+                .setParameter(1, Timestamp.valueOf(a.getCreatedAt().truncatedTo(ChronoUnit.HOURS)))
+                .setParameter(2, a.getAction())
+                .setParameter(3, a.getUsername() == null ? "" : a.getUsername())
+                .setParameter(4, a.getStatus())
+                .executeUpdate();
+    }
+
+    /**
+     * Counts per group over [from, to), both rounded down to the hour. Filters are exact matches; null means all.
+     */
+    @Transactional(readOnly = true)
+    public List<Bucket> stats(GroupBy groupBy, LocalDateTime from, LocalDateTime to,
+                              String action, String username, String status) {
+        StringBuilder sql = new StringBuilder("SELECT ").append(groupBy.sql).append(" AS k, SUM(cnt) AS c ")
+                .append("FROM audit_rollup_hourly WHERE 1 = 1");
+        List<Object> params = new ArrayList<>();
+        if (from != null) {
+            sql.append(" AND bucket_hour >= ?").append(params.size() + 1);
+            params.add(Timestamp.valueOf(from.truncatedTo(ChronoUnit.HOURS)));
+        }
+        if (to != null) {
+            sql.append(" AND bucket_hour < ?").append(params.size() + 1);
+            params.add(Timestamp.valueOf(to.truncatedTo(ChronoUnit.HOURS)));
+        }
+        if (action != null) {
+            sql.append(" AND action = ?").append(params.size() + 1);
+            params.add(action);
+        }
+        if (username != null) {
+            sql.append(" AND username = ?").append(params.size() + 1);
+            params.add(username);
+        }
+        if (status != null) {
+            sql.append(" AND status = ?").append(params.size() + 1);
+            params.add(status);
+        }
+        sql.append(" GROUP BY k ORDER BY ").append(groupBy == GroupBy.HOUR || groupBy == GroupBy.DAY ? "k" : "c DESC, k");
+        Query q = em.createNativeQuery(sql.toString());
+        for (int i = 0; i < params.size(); i++) q.setParameter(i + 1, params.get(i));
+
+        List<Bucket> out = new ArrayList<>();
+        for (Object row : q.getResultList()) {
+            Object[] r = (Object[]) row;
+            Object key = r[0];
+            if (key instanceof Timestamp ts) key = ts.toLocalDateTime();
+            else if (key instanceof java.sql.Date d) key = d.toLocalDate();
+            else if ("".equals(key) && groupBy == GroupBy.USERNAME) key = null;
+            out.add(new Bucket(key, ((Number) r[1]).longValue()));
+        }
+        return out;
+    }
+}
@@ -0,0 +1,390 @@
+package com.company.ordertracking.audit;
+
+import com.company.ordertracking.entity.AuditLog;
+import com.company.ordertracking.entity.AuditLogText;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes audit rows off the caller's thread. A single writer thread inserts them in batches
+ * (JDBC batching, see hibernate.jdbc.batch_size) in its own transaction.
+ * <p>
+ * With the journal enabled (default) {@link #submit} appends the entry to the local {@link AuditJournal}
+ * and returns once it is fsynced; the writer replays the journal into audit_logs and moves the journal's
+ * audit_journal_checkpoint row forward in the same transaction, so a crash or a database outage neither
+ * loses nor duplicates entries. Every journal directory has its own checkpoint row, so several instances can
+ * share the database. Without the journal entries go through a bounded in-memory queue and the
+ * configured {@link OverflowPolicy} decides what happens when it is full.
+ */
+@Component
+public class AuditWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditWriter.class);
+
+    public enum OverflowPolicy {
+        /** Drop the new entry and count it. Never slows the caller down. */
+        DROP,
+        /** Wait up to app.audit.writer.block-timeout-ms for space, then drop. */
+        BLOCK,
+        /** Write the entry synchronously on the caller's thread. */
+        CALLER_RUNS
+    }
+
+    public record Stats(boolean async, boolean journal, int queueDepth, int queueCapacity, long enqueued, long written,
+                        long dropped, long failed, long batches, OverflowPolicy overflowPolicy) {}
+
+    private static final long MAX_RETRY_BACKOFF_MS = 30_000;
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private final AuditRollups rollups;
+    private final TransactionTemplate txTemplate;
+    private final boolean async;
+    private final int capacity;
+    private final BlockingQueue<AuditLog> queue;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final long blockTimeoutMs;
+    private final OverflowPolicy overflowPolicy;
+    private final boolean journalEnabled;
+    private final Path journalDir;
+    private final long journalSegmentBytes;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    private volatile boolean running;
+    private Thread writer;
+    private AuditJournal journal;
+    private String journalId;
+    private AuditJournal.Position replayed;
+    private final AtomicInteger appendedSinceWake = new AtomicInteger();
+
+    public AuditWriter(AuditRollups rollups,
+                       PlatformTransactionManager txManager,
+                       @Value("${app.audit.writer.async:true}") boolean async,
+                       @Value("${app.audit.writer.queue-capacity:10000}") int capacity,
+                       @Value("${app.audit.writer.batch-size:200}") int batchSize,
+                       @Value("${app.audit.writer.flush-interval-ms:500}") long flushIntervalMs,
+                       @Value("${app.audit.writer.block-timeout-ms:50}") long blockTimeoutMs,
+                       @Value("${app.audit.writer.overflow:DROP}") String overflow,
+                       @Value("${app.audit.journal.enabled:true}") boolean journalEnabled,
+                       @Value("${app.audit.journal.dir:audit-journal}") String journalDir,
+                       @Value("${app.audit.journal.segment-bytes:67108864}") long journalSegmentBytes) {
+        this.rollups = rollups;
+        this.txTemplate = new TransactionTemplate(txManager);
+        // independent of whatever business transaction the caller may be in
+        this.txTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.async = async;
+        this.capacity = Math.max(1, capacity);
+        this.queue = new ArrayBlockingQueue<>(this.capacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalMs = Math.max(1, flushIntervalMs);
+        this.blockTimeoutMs = Math.max(0, blockTimeoutMs);
+        this.overflowPolicy = OverflowPolicy.valueOf(overflow.trim().toUpperCase(Locale.ROOT));
+        this.journalEnabled = journalEnabled;
+        this.journalDir = Paths.get(journalDir).toAbsolutePath().normalize();
+        this.journalSegmentBytes = Math.max(64 * 1024, journalSegmentBytes);
+    }
+
+    @PostConstruct
+    void start() throws IOException {
+        if (!async) return;
+        if (journalEnabled) {
+            journalId = AuditJournal.identify(journalDir);
+            replayed = loadCheckpoint();
+            journal = new AuditJournal(journalDir, journalSegmentBytes, replayed.segment());
+        }
+        running = true;
+        writer = new Thread(journal != null ? this::runReplayer : this::runWriter, "audit-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Stop the writer thread and write whatever is still queued (or not yet replayed from the journal).
+     */
+    @PreDestroy
+    void shutdown() throws InterruptedException, IOException {
+        if (writer == null) return;
+        running = false;
+        if (journal != null) {
+            LockSupport.unpark(writer);
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+            // best effort: whatever does not make it stays in the journal for the next start
+            try {
+                while (!writer.isAlive() && replayOnce() > 0) { }
+            } catch (Exception e) {
+                log.warn("Audit journal not fully replayed at shutdown: {}", e.getMessage());
+            }
+            journal.close();
+            return;
+        }
+        writer.interrupt();
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        List<AuditLog> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        while (!rest.isEmpty()) {
+            List<AuditLog> batch = rest.subList(0, Math.min(batchSize, rest.size()));
+            write(new ArrayList<>(batch));
+            batch.clear();
+        }
+    }
+
+    public void submit(AuditLog entry) {
+        if (!async || !running) {
+            write(List.of(entry));
+            return;
+        }
+        if (journal != null) {
+            try {
+                journal.append(entry);
+                enqueued.incrementAndGet();
+                if (appendedSinceWake.incrementAndGet() >= batchSize) LockSupport.unpark(writer);
+            } catch (IOException e) {
+                log.warn("Audit journal append failed, writing directly: {}", e.getMessage());
+                write(List.of(entry));
+            }
+            return;
+        }
+        boolean queued = queue.offer(entry);
+        if (!queued) {
+            switch (overflowPolicy) {
+                case BLOCK -> {
+                    try {
+                        queued = queue.offer(entry, blockTimeoutMs, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                case CALLER_RUNS -> {
+                    write(List.of(entry));
+                    return;
+                }
+                case DROP -> { }
+            }
+        }
+        if (queued) {
+            enqueued.incrementAndGet();
+        } else if (dropped.incrementAndGet() % 1000 == 1) {
+            log.warn("Audit queue full ({} entries), dropped {} entries so far", capacity, dropped.get());
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(async, journal != null, queue.size(), capacity, enqueued.get(), written.get(),
+                dropped.get(), failed.get(), batches.get(), overflowPolicy);
+    }
+
+    private void runWriter() {
+        List<AuditLog> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                // wait for the first entry, then give the batch up to flushIntervalMs to fill
+                AuditLog first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    if (batch.size() >= batchSize) break;
+                    long left = deadline - System.nanoTime();
+                    if (left <= 0) break;
+                    AuditLog next = queue.poll(left, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // shutdown(): the entries taken so far are written below, the rest by shutdown()
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+    }
+
+    private void runReplayer() {
+        int attempt = 0;
+        while (running) {
+            int n;
+            try {
+                n = replayOnce();
+                attempt = 0;
+            } catch (Exception e) {
+                long backoff = Math.min(MAX_RETRY_BACKOFF_MS, flushIntervalMs << Math.min(attempt++, 16));
+                log.warn("Audit journal replay failed, retrying in {} ms: {}", backoff, e.getMessage());
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(backoff));
+                continue;
+            }
+            // a full batch means there is probably more; otherwise wait for the interval or a full batch
+            if (n < batchSize && running) LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(flushIntervalMs));
+        }
+    }
+
+    /**
+     * Replays one batch from the journal and returns its size. Throws (without moving the checkpoint) when the
+     * database is unavailable, so the batch is retried.
+     */
+    private int replayOnce() throws IOException {
+        appendedSinceWake.set(0);
+        AuditJournal.Batch batch = journal.read(replayed, batchSize);
+        if (batch.entries().isEmpty()) {
+            replayed = batch.next();
+            return 0;
+        }
+        AuditJournal.Position next = batch.next();
+        try {
+            txTemplate.executeWithoutResult(tx -> {
+                for (AuditLog a : batch.entries()) persist(a);
+                rollups.add(batch.entries());
+                em.flush();
+                saveCheckpoint(next);
+                em.clear();
+            });
+            written.addAndGet(batch.entries().size());
+            batches.incrementAndGet();
+        } catch (RuntimeException e) {
+            if (!rejectsRow(e)) throw e;
+            // a row the table will never accept (e.g. a value that is too long): go entry by entry and skip only that
+            // one, rather than blocking the journal forever
+            replayEntryByEntry(batch.entries().size());
+            return batch.entries().size();
+        }
+        if (next.segment() > replayed.segment()) journal.deleteBefore(next);
+        replayed = next;
+        return batch.entries().size();
+    }
+
+    /**
+     * Replays {@code count} entries one at a time, each in a transaction with the checkpoint right past it. An entry
+     * the database rejects with a constraint violation is skipped (the checkpoint alone moves past it); any other
+     * failure is thrown with the checkpoint at the last entry written, so the rest is retried.
+     */
+    private void replayEntryByEntry(int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            // re-read: the entities from the failed transaction already carry ids
+            AuditJournal.Batch one = journal.read(replayed, 1);
+            AuditJournal.Position next = one.next();
+            if (!one.entries().isEmpty()) {
+                AuditLog a = one.entries().get(0);
+                try {
+                    txTemplate.executeWithoutResult(tx -> {
+                        persist(a);
+                        rollups.add(List.of(a));
+                        em.flush();
+                        saveCheckpoint(next);
+                        em.clear();
+                    });
+                    written.incrementAndGet();
+                } catch (RuntimeException e) {
+                    if (!rejectsRow(e)) throw e;
+                    txTemplate.executeWithoutResult(tx -> saveCheckpoint(next));
+                    failed.incrementAndGet();
+                    log.warn("Skipping audit entry the database rejects ({} {}): {}", a.getAction(), a.getCreatedAt(),
+                            e.getMessage());
+                }
+            }
+            if (next.segment() > replayed.segment()) journal.deleteBefore(next);
+            replayed = next;
+        }
+        batches.incrementAndGet();
+    }
+
+    /**
+     * SQLSTATE class 22 (data exception, e.g. a value too long) or 23 (constraint violation): the row itself is
+     * bad and retrying will not help. Checked on the SQLException because flush() inside the template throws
+     * Hibernate's exceptions untranslated.
+     */
+    private static boolean rejectsRow(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof DataIntegrityViolationException) return true;
+            if (t instanceof SQLException sql && sql.getSQLState() != null
+                    && (sql.getSQLState().startsWith("22") || sql.getSQLState().startsWith("23"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Checkpoint of this instance's journal, created at the start of the journal on first use. */
+    private AuditJournal.Position loadCheckpoint() {
+        return txTemplate.execute(tx -> {
+            List<?> rows = em.createNativeQuery(
+                            "SELECT segment_no, segment_offset FROM audit_journal_checkpoint WHERE journal_id = ?1")
+                    .setParameter(1, journalId)
+                    .getResultList();
+            if (rows.isEmpty()) {
+                em.createNativeQuery("INSERT INTO audit_journal_checkpoint "
+                                + "(journal_id, segment_no, segment_offset, updated_at) VALUES (?1, 0, 0, ?2)")
+                        .setParameter(1, journalId)
+                        .setParameter(2, LocalDateTime.now())
+                        .executeUpdate();
+                return new AuditJournal.Position(0, 0);
+            }
+            Object[] row = (Object[]) rows.get(0);
+            return new AuditJournal.Position(((Number) row[0]).longValue(), ((Number) row[1]).longValue());
+        });
+    }
+
+    private void saveCheckpoint(AuditJournal.Position p) {
+        em.createNativeQuery("UPDATE audit_journal_checkpoint SET segment_no = ?1, segment_offset = ?2, "
+                        + "updated_at = ?3 WHERE journal_id = ?4")
+                .setParameter(1, p.segment())
+                .setParameter(2, p.offset())
+                .setParameter(3, LocalDateTime.now())
+                .setParameter(4, journalId)
+                .executeUpdate();
+    }
+
+    private void persist(AuditLog a) {
+        em.persist(a); // assigns the id (pooled generator, no INSERT yet)
+        em.persist(AuditLogText.of(a));
+    }
+
+    private void write(List<AuditLog> batch) {
+        try {
+            txTemplate.executeWithoutResult(tx -> {
+                for (AuditLog a : batch) persist(a);
+                rollups.add(batch);
+                em.flush();
+                em.clear();
+            });
+            written.addAndGet(batch.size());
+            batches.incrementAndGet();
+        } catch (Exception e) {
+            // Do not break business flow if logging fails.
+            failed.addAndGet(batch.size());
+            log.warn("Failed to write {} audit entries: {}", batch.size(), e.getMessage());
+        }
+    }
+}
@@ -14,7 +14,9 @@ import java.time.LocalDateTime;
 public class AuditLog {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "auditLogIds")
+    @TableGenerator(name = "auditLogIds", table = "id_generator", pkColumnName = "gen_name",
+            valueColumnName = "next_val", pkColumnValue = "audit_logs", allocationSize = 50)
     private Long id;
 
     @Column(name = "created_at", nullable = false)
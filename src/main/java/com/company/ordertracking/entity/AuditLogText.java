@@ -0,0 +1,52 @@
+package com.company.ordertracking.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Search text of one audit_logs row (same id). Lives in its own, unpartitioned table because MySQL does not
+ * allow FULLTEXT indexes on partitioned tables; see V16.
+ */
+@Entity
+@Table(name = "audit_logs_text")
+public class AuditLogText {
+
+    @Id
+    private Long id;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Lob
+    @Column(columnDefinition = "TEXT")
+    private String content;
+
+    protected AuditLogText() {}
+
+    public static AuditLogText of(AuditLog a) {
+        AuditLogText t = new AuditLogText();
+        t.id = a.getId();
+        t.createdAt = a.getCreatedAt();
+        // same columns (and order) as V16's backfill: CONCAT_WS(' ', username, action, target, status, ip, details)
+        t.content = Stream.of(a.getUsername(), a.getAction(), a.getTarget(), a.getStatus(), a.getIp(), a.getDetails())
+                .filter(Objects::nonNull)
+                .collect(Collectors.joining(" "));
+        return t;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public String getContent() {
+        return content;
+    }
+}
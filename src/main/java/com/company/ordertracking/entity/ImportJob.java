@@ -0,0 +1,112 @@
+package com.company.ordertracking.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Background order import (submitted with ?mode=async). Progress is persisted after every chunk.
+ */
+@Entity
+@Table(name = "import_job")
+public class ImportJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private ImportJobStatus status = ImportJobStatus.QUEUED;
+
+    @Column(length = 255)
+    private String source; // uploaded filename or "text"
+
+    @Column(length = 100)
+    private String username;
+
+    @Column(length = 50)
+    private String role;
+
+    @Column(length = 64)
+    private String ip;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    // refreshed by ImportJobService with an UPDATE of its own, so saving the entity never moves it back
+    @Column(name = "heartbeat_at", updatable = false)
+    private LocalDateTime heartbeatAt = LocalDateTime.now();
+
+    @Column(name = "rows_parsed", nullable = false)
+    private Integer rowsParsed = 0;
+
+    @Column(name = "orders_saved", nullable = false)
+    private Integer ordersSaved = 0;
+
+    @Column(name = "items_saved", nullable = false)
+    private Integer itemsSaved = 0;
+
+    @Column(nullable = false)
+    private Integer chunks = 0;
+
+    @Column(name = "failed_chunks", nullable = false)
+    private Integer failedChunks = 0;
+
+    @Lob
+    @Column(columnDefinition = "TEXT")
+    private String errors; // one message per line (capped)
+
+    public ImportJob() {}
+
+    public Long getId() { return id; }
+
+    public ImportJobStatus getStatus() { return status; }
+    public void setStatus(ImportJobStatus status) { this.status = status; }
+
+    public String getSource() { return source; }
+    public void setSource(String source) { this.source = source; }
+
+    public String getUsername() { return username; }
+    public void setUsername(String username) { this.username = username; }
+
+    public String getRole() { return role; }
+    public void setRole(String role) { this.role = role; }
+
+    public String getIp() { return ip; }
+    public void setIp(String ip) { this.ip = ip; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+
+    public LocalDateTime getStartedAt() { return startedAt; }
+    public void setStartedAt(LocalDateTime startedAt) { this.startedAt = startedAt; }
+
+    public LocalDateTime getFinishedAt() { return finishedAt; }
+    public void setFinishedAt(LocalDateTime finishedAt) { this.finishedAt = finishedAt; }
+
+    public LocalDateTime getHeartbeatAt() { return heartbeatAt; }
+
+    public Integer getRowsParsed() { return rowsParsed; }
+    public void setRowsParsed(Integer rowsParsed) { this.rowsParsed = rowsParsed; }
+
+    public Integer getOrdersSaved() { return ordersSaved; }
+    public void setOrdersSaved(Integer ordersSaved) { this.ordersSaved = ordersSaved; }
+
+    public Integer getItemsSaved() { return itemsSaved; }
+    public void setItemsSaved(Integer itemsSaved) { this.itemsSaved = itemsSaved; }
+
+    public Integer getChunks() { return chunks; }
+    public void setChunks(Integer chunks) { this.chunks = chunks; }
+
+    public Integer getFailedChunks() { return failedChunks; }
+    public void setFailedChunks(Integer failedChunks) { this.failedChunks = failedChunks; }
+
+    public String getErrors() { return errors; }
+    public void setErrors(String errors) { this.errors = errors; }
+}
@@ -0,0 +1,10 @@
+package com.company.ordertracking.entity;
+
+public enum ImportJobStatus {
+    QUEUED,
+    RUNNING,
+    SUCCEEDED,
+    PARTIAL,     // finished, but some chunks were rejected
+    FAILED,
+    INTERRUPTED  // the server stopped while the job was queued/running
+}
@@ -9,7 +9,9 @@ import java.time.LocalDateTime;
 @Table(name = "material_assessment")
 public class MaterialAssessment {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "materialAssessmentIds")
+    @TableGenerator(name = "materialAssessmentIds", table = "id_generator", pkColumnName = "gen_name",
+            valueColumnName = "next_val", pkColumnValue = "material_assessment", allocationSize = 50)
     private Long id;
 
     @Column(name = "material_name", nullable = false, length = 100)
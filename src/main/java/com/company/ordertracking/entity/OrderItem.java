@@ -8,7 +8,9 @@ import jakarta.persistence.*;
 public class OrderItem {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "orderItemIds")
+    @TableGenerator(name = "orderItemIds", table = "id_generator", pkColumnName = "gen_name",
+            valueColumnName = "next_val", pkColumnValue = "order_items", allocationSize = 50)
     private Long id;
 
     @Column(name="product_name", nullable = false, length = 255)
@@ -25,6 +27,10 @@ public class OrderItem {
     @Column(length = 500)
     private String notes;
 
+    // running sum of warehouse_receipt_log_item.qty, only ever changed by ReceiptCounters (V24)
+    @Column(name="received_qty", insertable = false, updatable = false)
+    private Integer receivedQty;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name="order_id", nullable = false)
     @JsonIgnore
@@ -50,6 +56,8 @@ public class OrderItem {
     public String getNotes() { return notes; }
     public void setNotes(String notes) { this.notes = notes; }
 
+    public Integer getReceivedQty() { return receivedQty; }
+
     public SalesOrder getOrder() { return order; }
     public void setOrder(SalesOrder order) { this.order = order; }
 }
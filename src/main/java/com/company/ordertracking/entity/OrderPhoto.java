@@ -21,6 +21,10 @@ public class OrderPhoto {
     @Column(name = "stored_filename", nullable = false, length = 255)
     private String storedFilename;
 
+    /** SHA-256 of the content for blobs in the content-addressed store (V19); null for older flat files. */
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
     @Column(name = "original_filename", nullable = false, length = 255)
     private String originalFilename;
 
@@ -63,6 +67,14 @@ public class OrderPhoto {
         this.storedFilename = storedFilename;
     }
 
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
     public String getOriginalFilename() {
         return originalFilename;
     }
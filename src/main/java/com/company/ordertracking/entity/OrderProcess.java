@@ -9,7 +9,9 @@ import java.time.LocalDateTime;
 @Table(name = "order_process")
 public class OrderProcess {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "orderProcessIds")
+    @TableGenerator(name = "orderProcessIds", table = "id_generator", pkColumnName = "gen_name",
+            valueColumnName = "next_val", pkColumnValue = "order_process", allocationSize = 50)
     private Long id;
 
     @Column(name = "process_name", nullable = false, length = 100)
@@ -18,7 +20,8 @@ public class OrderProcess {
     @Column(name = "target_quantity")
     private Integer targetQuantity;
 
-    @Column(name = "finished_quantity", nullable = false)
+    // after the INSERT only ProcessProgress writes it, so saving a stale entity cannot undo flushed increments
+    @Column(name = "finished_quantity", nullable = false, updatable = false)
     private Integer finishedQuantity = 0;
 
     @Column(length = 500)
@@ -11,8 +11,11 @@ import java.util.List;
 @Table(name = "sales_order")
 public class SalesOrder {
 
+    // pooled table ids (not IDENTITY) so Hibernate can batch the INSERTs; see V14__pooled_id_generators.sql
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "salesOrderIds")
+    @TableGenerator(name = "salesOrderIds", table = "id_generator", pkColumnName = "gen_name",
+            valueColumnName = "next_val", pkColumnValue = "sales_order", allocationSize = 50)
     private Long id;
 
     @Column(name="order_no", nullable = false, length = 64, unique = true)
@@ -43,7 +46,7 @@ public class SalesOrder {
     @Column(length = 32)
     private OrderStatus status = OrderStatus.DRAFT;
 
-    @Column(name="created_at")
+    @Column(name="created_at", nullable = false)
     private LocalDateTime createdAt = LocalDateTime.now();
 
     @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true)
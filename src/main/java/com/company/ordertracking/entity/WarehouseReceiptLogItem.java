@@ -11,7 +11,9 @@ import jakarta.persistence.*;
 public class WarehouseReceiptLogItem {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "receiptLogItemIds")
+    @TableGenerator(name = "receiptLogItemIds", table = "id_generator", pkColumnName = "gen_name",
+            valueColumnName = "next_val", pkColumnValue = "warehouse_receipt_log_item", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -0,0 +1,248 @@
+package com.company.ordertracking.imports;
+
+import com.company.ordertracking.audit.AuditLogService;
+import com.company.ordertracking.entity.ImportJob;
+import com.company.ordertracking.entity.ImportJobStatus;
+import com.company.ordertracking.repo.ImportJobRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs order imports on a small bounded executor instead of the Tomcat request thread.
+ * Job state (status, counters, errors) lives in the import_job table and is updated after every chunk.
+ * <p>
+ * Every instance refreshes heartbeat_at of the jobs it has queued or running (V13). A QUEUED/RUNNING job whose
+ * heartbeat has gone stale belongs to an instance that stopped, so it is marked INTERRUPTED; jobs of instances that
+ * are still alive are never touched.
+ */
+@Service
+public class ImportJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportJobService.class);
+
+    static final int MAX_STORED_ERRORS = 200;
+
+    /**
+     * Handed to a running task; each call persists the latest totals.
+     */
+    public interface Progress {
+        void update(int rowsParsed, int ordersSaved, int itemsSaved, int chunks, int failedChunks, List<String> newErrors);
+    }
+
+    /**
+     * The import work itself. Throwing marks the job FAILED.
+     */
+    public interface Task {
+        void run(Progress progress) throws Exception;
+    }
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private final ImportJobRepository repo;
+    private final AuditLogService auditLogService;
+    private final TransactionTemplate txTemplate;
+    private final ThreadPoolExecutor executor;
+    private final long staleAfterSeconds;
+
+    // jobs submitted by this instance that have not finished yet (queued in the executor or running)
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    public ImportJobService(ImportJobRepository repo,
+                            AuditLogService auditLogService,
+                            PlatformTransactionManager txManager,
+                            @Value("${app.import.jobs.threads:2}") int threads,
+                            @Value("${app.import.jobs.queue-capacity:20}") int queueCapacity,
+                            @Value("${app.import.jobs.stale-after-seconds:300}") long staleAfterSeconds) {
+        this.repo = repo;
+        this.auditLogService = auditLogService;
+        this.txTemplate = new TransactionTemplate(txManager);
+        this.staleAfterSeconds = staleAfterSeconds;
+        AtomicInteger seq = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "import-job-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Refreshes the heartbeat of this instance's jobs, then marks jobs whose heartbeat is older than
+     * stale-after-seconds INTERRUPTED: their instance stopped before they finished, and they cannot be resumed
+     * (their uploads were temp files). Their progress is kept. Runs right after startup and then periodically.
+     */
+    @Scheduled(fixedDelayString = "${app.import.jobs.heartbeat-seconds:30}", timeUnit = TimeUnit.SECONDS)
+    void heartbeat() {
+        try {
+            List<Long> own = new ArrayList<>(inFlight);
+            if (!own.isEmpty()) {
+                txTemplate.executeWithoutResult(tx -> em.createNativeQuery(
+                                "UPDATE import_job SET heartbeat_at = CURRENT_TIMESTAMP(6) "
+                                        + "WHERE id IN (?1) AND status IN ('QUEUED', 'RUNNING')")
+                        .setParameter(1, own)
+                        .executeUpdate());
+            }
+            markInterrupted();
+        } catch (Exception e) {
+            log.warn("Import job heartbeat failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private void markInterrupted() {
+        @SuppressWarnings("unchecked")
+        List<Number> stale = txTemplate.execute(tx -> (List<Number>) em.createNativeQuery(
+                        "SELECT id FROM import_job WHERE status IN ('QUEUED', 'RUNNING') AND "
+                                + "(heartbeat_at IS NULL OR heartbeat_at < TIMESTAMPADD(SECOND, ?1, CURRENT_TIMESTAMP(6)))")
+                .setParameter(1, -staleAfterSeconds)
+                .getResultList());
+        for (Number n : stale) {
+            long id = n.longValue();
+            if (inFlight.contains(id)) continue;
+            Boolean marked = txTemplate.execute(tx -> {
+                ImportJob job = repo.findById(id).orElse(null);
+                if (job == null) return false;
+                // re-check the heartbeat in the UPDATE: the owner may have refreshed it since the SELECT
+                return em.createNativeQuery(
+                                "UPDATE import_job SET status = 'INTERRUPTED', finished_at = ?2, errors = ?3 "
+                                        + "WHERE id = ?1 AND status IN ('QUEUED', 'RUNNING') AND (heartbeat_at IS NULL "
+                                        + "OR heartbeat_at < TIMESTAMPADD(SECOND, ?4, CURRENT_TIMESTAMP(6)))")
+                        .setParameter(1, id)
+                        .setParameter(2, LocalDateTime.now())
+                        .setParameter(3, appendErrors(job.getErrors(),
+                                List.of("the server running the job stopped before it finished")))
+                        .setParameter(4, -staleAfterSeconds)
+                        .executeUpdate() > 0;
+            });
+            if (Boolean.TRUE.equals(marked)) log.warn("Import job {} interrupted (no heartbeat)", id);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Persists a QUEUED job and hands the task to the executor.
+     *
+     * @throws RejectedExecutionException when the queue is full (the job is stored as FAILED)
+     */
+    public ImportJob submit(String source, String username, String role, String ip, Task task) {
+        ImportJob job = new ImportJob();
+        job.setSource(source);
+        job.setUsername(username);
+        job.setRole(role);
+        job.setIp(ip);
+        job = repo.save(job);
+
+        Long id = job.getId();
+        inFlight.add(id);
+        try {
+            executor.execute(() -> {
+                try {
+                    run(id, task);
+                } finally {
+                    inFlight.remove(id);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(id);
+            job.setStatus(ImportJobStatus.FAILED);
+            job.setFinishedAt(LocalDateTime.now());
+            job.setErrors("import queue is full, please try again later");
+            repo.save(job);
+            throw e;
+        }
+        return job;
+    }
+
+    public Optional<ImportJob> find(Long id) {
+        return repo.findById(id);
+    }
+
+    private void run(Long id, Task task) {
+        ImportJob start = repo.findById(id).orElse(null);
+        if (start == null) return;
+        start.setStatus(ImportJobStatus.RUNNING);
+        start.setStartedAt(LocalDateTime.now());
+        JobProgress progress = new JobProgress(repo.save(start));
+
+        ImportJob job;
+        try {
+            task.run(progress);
+            job = progress.job;
+            job.setStatus(job.getFailedChunks() > 0 ? ImportJobStatus.PARTIAL : ImportJobStatus.SUCCEEDED);
+        } catch (Exception e) {
+            job = progress.job;
+            job.setStatus(ImportJobStatus.FAILED);
+            job.setErrors(appendErrors(job.getErrors(), List.of(e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage())));
+        }
+        job.setFinishedAt(LocalDateTime.now());
+        job = repo.save(job);
+
+        auditLogService.logDetached(job.getUsername(), job.getRole(), job.getIp(), "IMPORT_ORDERS",
+                "importJob=" + job.getId(),
+                job.getStatus() == ImportJobStatus.SUCCEEDED ? AuditLogService.Status.SUCCESS : AuditLogService.Status.FAIL,
+                "jobId=" + job.getId() + ", status=" + job.getStatus() + ", rows=" + job.getRowsParsed()
+                        + ", orders=" + job.getOrdersSaved() + ", items=" + job.getItemsSaved()
+                        + ", chunks=" + job.getChunks() + ", failedChunks=" + job.getFailedChunks());
+    }
+
+    private final class JobProgress implements Progress {
+        private ImportJob job;
+
+        JobProgress(ImportJob job) {
+            this.job = job;
+        }
+
+        @Override
+        public void update(int rowsParsed, int ordersSaved, int itemsSaved, int chunks, int failedChunks, List<String> newErrors) {
+            job.setRowsParsed(rowsParsed);
+            job.setOrdersSaved(ordersSaved);
+            job.setItemsSaved(itemsSaved);
+            job.setChunks(chunks);
+            job.setFailedChunks(failedChunks);
+            if (newErrors != null && !newErrors.isEmpty()) {
+                job.setErrors(appendErrors(job.getErrors(), newErrors));
+            }
+            job = repo.save(job);
+        }
+    }
+
+    public static List<String> errorLines(ImportJob job) {
+        if (job.getErrors() == null || job.getErrors().isBlank()) return List.of();
+        return List.of(job.getErrors().split("\n"));
+    }
+
+    private static String appendErrors(String existing, List<String> more) {
+        List<String> lines = new ArrayList<>();
+        if (existing != null && !existing.isBlank()) lines.addAll(List.of(existing.split("\n")));
+        for (String m : more) {
+            if (lines.size() >= MAX_STORED_ERRORS) break;
+            lines.add(m == null ? "" : m.replace('\n', ' '));
+        }
+        return String.join("\n", lines);
+    }
+}
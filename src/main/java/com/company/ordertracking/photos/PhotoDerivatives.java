@@ -0,0 +1,342 @@
+package com.company.ordertracking.photos;
+
+import com.company.ordertracking.entity.OrderPhoto;
+import com.company.ordertracking.repo.OrderPhotoRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Downscaled JPEG copies of order photos, stored next to the original as {@code <stored>.<size>.jpg}
+ * (e.g. {@code 12_ab34.jpg.thumb.jpg}), so gallery tiles do not pull multi-MB originals.
+ * <p>
+ * Derivatives are generated after upload on a small bounded executor; when the queue is full the work is skipped
+ * and {@link #path} keeps answering null, so callers fall back to the original. {@link #backfill} walks existing
+ * photos once and fills in what is missing.
+ */
+@Component
+public class PhotoDerivatives {
+
+    private static final Logger log = LoggerFactory.getLogger(PhotoDerivatives.class);
+
+    private static final int BACKFILL_PAGE = 200;
+
+    public enum Size {
+        THUMB(200),
+        PREVIEW(1024);
+
+        /** Longest edge in pixels. */
+        final int maxEdge;
+
+        Size(int maxEdge) {
+            this.maxEdge = maxEdge;
+        }
+
+        String suffix() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        /** Parses a ?size= value; null for "original" (or nothing). */
+        public static Size fromParam(String s) {
+            if (s == null || s.isBlank() || s.equalsIgnoreCase("original")) return null;
+            return valueOf(s.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    public record BackfillStats(boolean running, int scanned, int generated, int failed) {}
+
+    private final OrderPhotoRepository photoRepo;
+    private final Path uploadDir;
+    private final float quality;
+    private final boolean backfillOnStartup;
+    private final ThreadPoolExecutor executor;
+
+    /** Stored filenames queued or being processed, so a burst of requests does not queue the same work twice. */
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    /** Originals no ImageIO reader understands (e.g. HEIC); not retried until restart. */
+    private final Set<String> unsupported = ConcurrentHashMap.newKeySet();
+
+    private final AtomicBoolean backfillRunning = new AtomicBoolean();
+    private final AtomicInteger backfillSeq = new AtomicInteger();
+    private final AtomicInteger backfillScanned = new AtomicInteger();
+    private final AtomicInteger backfillGenerated = new AtomicInteger();
+    private final AtomicInteger backfillFailed = new AtomicInteger();
+
+    public PhotoDerivatives(OrderPhotoRepository photoRepo,
+                            @Value("${app.upload.dir:uploads}") String uploadDir,
+                            @Value("${app.photos.derivatives.threads:1}") int threads,
+                            @Value("${app.photos.derivatives.queue-capacity:200}") int queueCapacity,
+                            @Value("${app.photos.derivatives.jpeg-quality:0.8}") float quality,
+                            @Value("${app.photos.derivatives.backfill-on-startup:true}") boolean backfillOnStartup) {
+        this.photoRepo = photoRepo;
+        this.uploadDir = Paths.get(uploadDir).toAbsolutePath().normalize();
+        this.quality = quality;
+        this.backfillOnStartup = backfillOnStartup;
+        AtomicInteger seq = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "photo-derivatives-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    // keep image scaling from competing with request threads
+                    t.setPriority(Thread.MIN_PRIORITY);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        if (backfillOnStartup) backfill();
+    }
+
+    /**
+     * The derivative file if it has been generated; otherwise null (and generation is queued when possible).
+     */
+    public Path path(String storedFilename, Size size) {
+        Path file = file(storedFilename, size);
+        if (file == null) return null;
+        if (Files.exists(file)) return file;
+        generateAsync(storedFilename);
+        return null;
+    }
+
+    /**
+     * Queues generation of all sizes for one original. Best effort: a full queue just skips it
+     * (the next {@link #path} request or a backfill retries).
+     */
+    public void generateAsync(String storedFilename) {
+        if (storedFilename == null || unsupported.contains(storedFilename)) return;
+        if (!pending.add(storedFilename)) return;
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(storedFilename);
+                } finally {
+                    pending.remove(storedFilename);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(storedFilename);
+        }
+    }
+
+    /**
+     * Removes the derivatives of an original (best effort, like the original itself).
+     */
+    public void delete(String storedFilename) {
+        for (Size size : Size.values()) {
+            Path file = file(storedFilename, size);
+            if (file == null) continue;
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {}
+        }
+    }
+
+    /**
+     * Starts one pass over all photos (by id) generating missing derivatives. The pass runs on a thread of its own,
+     * not on the derivative executor, so new uploads never wait behind it (or get dropped from a full queue).
+     * Returns false when a pass is already running.
+     */
+    public boolean backfill() {
+        if (!backfillRunning.compareAndSet(false, true)) return false;
+        backfillScanned.set(0);
+        backfillGenerated.set(0);
+        backfillFailed.set(0);
+        Thread t = new Thread(this::runBackfill, "photo-derivatives-backfill-" + backfillSeq.incrementAndGet());
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        t.start();
+        return true;
+    }
+
+    public BackfillStats backfillStats() {
+        return new BackfillStats(backfillRunning.get(), backfillScanned.get(), backfillGenerated.get(), backfillFailed.get());
+    }
+
+    private void runBackfill() {
+        try {
+            long afterId = 0;
+            while (!executor.isShutdown()) {
+                List<OrderPhoto> page = photoRepo.findTop200ByIdGreaterThanOrderByIdAsc(afterId);
+                for (OrderPhoto p : page) {
+                    backfillScanned.incrementAndGet();
+                    String stored = p.getStoredFilename();
+                    if (missing(stored) && pending.add(stored)) {
+                        try {
+                            if (generate(stored)) backfillGenerated.incrementAndGet();
+                            else backfillFailed.incrementAndGet();
+                        } finally {
+                            pending.remove(stored);
+                        }
+                    }
+                    afterId = p.getId();
+                }
+                if (page.size() < BACKFILL_PAGE) break;
+            }
+            log.info("Photo derivative backfill done: {} scanned, {} generated, {} failed",
+                    backfillScanned.get(), backfillGenerated.get(), backfillFailed.get());
+        } catch (Exception e) {
+            log.warn("Photo derivative backfill stopped: {}", e.getMessage(), e);
+        } finally {
+            backfillRunning.set(false);
+        }
+    }
+
+    private boolean missing(String storedFilename) {
+        if (storedFilename == null || unsupported.contains(storedFilename)) return false;
+        for (Size size : Size.values()) {
+            Path file = file(storedFilename, size);
+            if (file != null && !Files.exists(file)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Generates every missing size of one original. Returns false when the original is gone or not decodable.
+     */
+    private boolean generate(String storedFilename) {
+        Path original = uploadDir.resolve(storedFilename).normalize();
+        if (!original.startsWith(uploadDir) || !Files.exists(original)) return false;
+        try {
+            // decode once, subsampled just enough for the largest size, and scale every size from that
+            Size largest = Size.PREVIEW;
+            BufferedImage source = read(original, largest.maxEdge);
+            if (source == null) {
+                unsupported.add(storedFilename);
+                return false;
+            }
+            for (Size size : Size.values()) {
+                Path target = file(storedFilename, size);
+                if (target == null || Files.exists(target)) continue;
+                writeJpeg(scale(source, size.maxEdge), target);
+            }
+            return true;
+        } catch (Exception e) {
+            // a reader exists but failed (truncated upload, I/O error, ...): retried on the next request or backfill
+            log.warn("Could not generate derivatives for {}: {}", storedFilename, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Reads an image with source subsampling so a 6000px original is never fully decoded just to make a 1024px copy.
+     * Returns null when no ImageIO reader understands the file.
+     */
+    private static BufferedImage read(Path file, int maxEdge) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            if (in == null) return null;
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) return null;
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int longest = Math.max(reader.getWidth(0), reader.getHeight(0));
+                ImageReadParam param = reader.getDefaultReadParam();
+                // keep at least 2x the target so the final bilinear pass still has detail to work with
+                int step = Math.max(1, longest / (maxEdge * 2));
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage scale(BufferedImage src, int maxEdge) {
+        int w = src.getWidth();
+        int h = src.getHeight();
+        double ratio = Math.min(1.0, (double) maxEdge / Math.max(w, h));
+        int tw = Math.max(1, (int) Math.round(w * ratio));
+        int th = Math.max(1, (int) Math.round(h * ratio));
+        // always redraw into RGB: JPEG has no alpha, and some PNG / CMYK inputs have odd color models
+        BufferedImage out = new BufferedImage(tw, th, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = out.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, tw, th);
+            g.drawImage(src, 0, 0, tw, th, null);
+        } finally {
+            g.dispose();
+        }
+        return out;
+    }
+
+    private void writeJpeg(BufferedImage img, Path target) throws IOException {
+        Path tmp = Files.createTempFile(target.getParent(), "derivative-", ".tmp");
+        try {
+            ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+            try (ImageOutputStream out = ImageIO.createImageOutputStream(tmp.toFile())) {
+                writer.setOutput(out);
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(quality);
+                writer.write(null, new IIOImage(img, null, null), param);
+            } finally {
+                writer.dispose();
+            }
+            // readers only ever see a complete file
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /** True for a derivative file name (relative to the upload dir). */
+    static boolean isDerivative(String name) {
+        for (Size size : Size.values()) {
+            if (name.endsWith("." + size.suffix() + ".jpg")) return true;
+        }
+        return false;
+    }
+
+    /** Stored filename of the original a derivative was made from. */
+    static String originalOf(String derivativeName) {
+        for (Size size : Size.values()) {
+            String suffix = "." + size.suffix() + ".jpg";
+            if (derivativeName.endsWith(suffix)) return derivativeName.substring(0, derivativeName.length() - suffix.length());
+        }
+        return derivativeName;
+    }
+
+    private Path file(String storedFilename, Size size) {
+        if (storedFilename == null) return null;
+        Path file = uploadDir.resolve(storedFilename + "." + size.suffix() + ".jpg").normalize();
+        return file.startsWith(uploadDir) ? file : null;
+    }
+}
@@ -0,0 +1,362 @@
+package com.company.ordertracking.photos;
+
+import com.company.ordertracking.entity.OrderPhoto;
+import com.company.ordertracking.entity.SalesOrder;
+import com.company.ordertracking.repo.OrderPhotoRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed photo files: every distinct content is stored once, under {@code uploads/ab/cd/<sha256>},
+ * and shared by all order_photo rows with that content_hash. photo_blob (V19) counts the references.
+ * <p>
+ * Uploads are first staged in {@code uploads/.incoming} while the hash is computed, then linked by {@link #add}:
+ * the blob row is upserted first, which locks it, so the file move cannot interleave with the GC removing the same
+ * blob. Unreferenced blobs are only removed by {@link #collect} after a grace period; the same pass sweeps files
+ * nothing points at (e.g. left behind when deleting a pre-V19 photo failed half way, or by order deletes).
+ */
+@Component
+public class PhotoStore {
+
+    private static final Logger log = LoggerFactory.getLogger(PhotoStore.class);
+
+    static final String INCOMING_DIR = ".incoming";
+    private static final int SWEEP_BATCH = 500;
+    private static final int COPY_BUFFER = 64 * 1024;
+
+    public record Staged(Path file, String hash, long size) {}
+
+    public record GcStats(int blobsRemoved, int countsFixed, int orphanFilesRemoved, int staleUploadsRemoved) {}
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private final OrderPhotoRepository photoRepo;
+    private final PhotoDerivatives derivatives;
+    private final TransactionTemplate txTemplate;
+    private final Path uploadDir;
+    private final Path incomingDir;
+    private final Duration grace;
+    private final AtomicBoolean collecting = new AtomicBoolean();
+
+    public PhotoStore(OrderPhotoRepository photoRepo,
+                      PhotoDerivatives derivatives,
+                      PlatformTransactionManager txManager,
+                      @Value("${app.upload.dir:uploads}") String uploadDir,
+                      @Value("${app.photos.gc.grace-hours:24}") long graceHours) {
+        this.photoRepo = photoRepo;
+        this.derivatives = derivatives;
+        this.txTemplate = new TransactionTemplate(txManager);
+        this.uploadDir = Paths.get(uploadDir).toAbsolutePath().normalize();
+        this.incomingDir = this.uploadDir.resolve(INCOMING_DIR);
+        this.grace = Duration.ofHours(Math.max(0, graceHours));
+    }
+
+    /**
+     * Copies an upload into a temp file, computing its SHA-256 on the way. The caller must {@link #discard} it
+     * once it has been linked (or failed).
+     */
+    public Staged stage(InputStream in) throws IOException {
+        Files.createDirectories(incomingDir);
+        Path tmp = Files.createTempFile(incomingDir, "upload-", ".tmp");
+        MessageDigest sha = sha256();
+        long size = 0;
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            byte[] buf = new byte[COPY_BUFFER];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                sha.update(buf, 0, n);
+                out.write(buf, 0, n);
+                size += n;
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        return new Staged(tmp, HexFormat.of().formatHex(sha.digest()), size);
+    }
+
+    /**
+     * Stages a file that is already on disk in the upload dir (e.g. a completed chunked upload) by hashing it;
+     * {@link #add} moves it into place and {@link #discard} deletes it.
+     */
+    public Staged stage(Path file) throws IOException {
+        MessageDigest sha = sha256();
+        long size = 0;
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buf = new byte[COPY_BUFFER];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                sha.update(buf, 0, n);
+                size += n;
+            }
+        }
+        return new Staged(file, HexFormat.of().formatHex(sha.digest()), size);
+    }
+
+    public void discard(Staged staged) {
+        if (staged == null) return;
+        try {
+            Files.deleteIfExists(staged.file());
+        } catch (IOException ignored) {}
+    }
+
+    /**
+     * Saves a new order_photo row for staged content, taking a reference on its blob and moving the staged file into
+     * place unless that content is already stored.
+     */
+    @Transactional
+    public OrderPhoto add(SalesOrder order, Staged staged, String originalFilename, String contentType) throws IOException {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        em.createNativeQuery("INSERT INTO photo_blob (hash, size, ref_count, created_at, updated_at) "
+                        + "VALUES (?1, ?2, 1, ?3, ?3) "
+                        + "ON DUPLICATE KEY UPDATE ref_count = ref_count + 1, updated_at = VALUES(updated_at)")
+                .setParameter(1, staged.hash())
+                .setParameter(2, staged.size())
+                .setParameter(3, now)
+                .executeUpdate();
+
+        // we hold the blob row lock until commit, so the GC cannot delete this file in between
+        Path target = blobFile(staged.hash());
+        if (!Files.exists(target)) {
+            Files.createDirectories(target.getParent());
+            Files.move(staged.file(), target, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        OrderPhoto photo = new OrderPhoto();
+        photo.setOrder(order);
+        photo.setStoredFilename(blobName(staged.hash()));
+        photo.setContentHash(staged.hash());
+        photo.setOriginalFilename(originalFilename);
+        photo.setContentType(contentType);
+        photo.setFileSize(staged.size());
+        return photoRepo.save(photo);
+    }
+
+    /**
+     * Deletes a photo row and drops its blob reference. The blob file stays until the GC finds it unreferenced
+     * past the grace period; pre-V19 flat files are the caller's to delete.
+     */
+    @Transactional
+    public void remove(OrderPhoto photo) {
+        photoRepo.delete(photo);
+        if (photo.getContentHash() != null) release(photo.getContentHash(), 1);
+    }
+
+    /**
+     * Drops the blob references of all photos of an order, for order deletes (order_photo rows go with the
+     * order by ON DELETE CASCADE, which would otherwise leave the counts behind). Call in the deleting transaction.
+     */
+    @Transactional
+    public void releaseOrder(Long orderId) {
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = em.createNativeQuery("SELECT content_hash, COUNT(*) FROM order_photo "
+                        + "WHERE order_id = ?1 AND content_hash IS NOT NULL GROUP BY content_hash")
+                .setParameter(1, orderId)
+                .getResultList();
+        for (Object[] r : rows) release((String) r[0], ((Number) r[1]).intValue());
+    }
+
+    private void release(String hash, int n) {
+        em.createNativeQuery("UPDATE photo_blob SET ref_count = GREATEST(ref_count - ?2, 0), updated_at = ?3 WHERE hash = ?1")
+                .setParameter(1, hash)
+                .setParameter(2, n)
+                .setParameter(3, Timestamp.valueOf(LocalDateTime.now()))
+                .executeUpdate();
+    }
+
+    /**
+     * Garbage collection, daily by default:
+     * <ol>
+     *   <li>blobs at zero references (or whose count disagrees with order_photo) are re-checked one by one under
+     *       the row lock; a wrong count is corrected, an unreferenced blob past the grace period is deleted;</li>
+     *   <li>files no row points at, derivatives without an original and abandoned staged uploads are removed
+     *       once they are older than the grace period.</li>
+     * </ol>
+     * Returns null when a collection is already running.
+     */
+    @Scheduled(cron = "${app.photos.gc.cron:0 15 4 * * *}")
+    public GcStats collect() {
+        if (!collecting.compareAndSet(false, true)) return null;
+        try {
+            Instant cutoff = Instant.now().minus(grace);
+            int[] blobs = collectBlobs(cutoff);
+            int[] files = sweepFiles(cutoff);
+            GcStats stats = new GcStats(blobs[0], blobs[1], files[0], files[1]);
+            log.info("Photo GC: {}", stats);
+            return stats;
+        } catch (Exception e) {
+            log.warn("Photo GC failed: {}", e.getMessage(), e);
+            return new GcStats(0, 0, 0, 0);
+        } finally {
+            collecting.set(false);
+        }
+    }
+
+    /** @return {removed, countsFixed} */
+    private int[] collectBlobs(Instant cutoff) {
+        Timestamp before = Timestamp.from(cutoff);
+        @SuppressWarnings("unchecked")
+        List<String> candidates = txTemplate.execute(tx -> (List<String>) em.createNativeQuery(
+                        "SELECT b.hash FROM photo_blob b "
+                                + "LEFT JOIN (SELECT content_hash, COUNT(*) AS c FROM order_photo "
+                                + "WHERE content_hash IS NOT NULL GROUP BY content_hash) p ON p.content_hash = b.hash "
+                                + "WHERE (b.ref_count = 0 AND b.updated_at < ?1) OR b.ref_count <> COALESCE(p.c, 0)")
+                .setParameter(1, before)
+                .getResultList());
+        int removed = 0;
+        int fixed = 0;
+        for (String hash : candidates) {
+            String outcome = txTemplate.execute(tx -> {
+                @SuppressWarnings("unchecked")
+                List<Object[]> locked = em.createNativeQuery(
+                                "SELECT ref_count, updated_at FROM photo_blob WHERE hash = ?1 FOR UPDATE")
+                        .setParameter(1, hash)
+                        .getResultList();
+                if (locked.isEmpty()) return "gone";
+                int refs = ((Number) locked.get(0)[0]).intValue();
+                // counted after taking the lock, so an upload that was linking this blob has committed by now
+                int actual = ((Number) em.createNativeQuery("SELECT COUNT(*) FROM order_photo WHERE content_hash = ?1")
+                        .setParameter(1, hash)
+                        .getSingleResult()).intValue();
+                if (refs != actual) {
+                    em.createNativeQuery("UPDATE photo_blob SET ref_count = ?2, updated_at = ?3 WHERE hash = ?1")
+                            .setParameter(1, hash)
+                            .setParameter(2, actual)
+                            .setParameter(3, Timestamp.valueOf(LocalDateTime.now()))
+                            .executeUpdate();
+                    return "fixed";
+                }
+                if (refs > 0 || !toInstant(locked.get(0)[1]).isBefore(cutoff)) return "kept";
+                deleteQuietly(blobFile(hash));
+                derivatives.delete(blobName(hash));
+                em.createNativeQuery("DELETE FROM photo_blob WHERE hash = ?1").setParameter(1, hash).executeUpdate();
+                return "removed";
+            });
+            if ("removed".equals(outcome)) removed++;
+            else if ("fixed".equals(outcome)) fixed++;
+        }
+        return new int[]{removed, fixed};
+    }
+
+    /** @return {orphanFilesRemoved, staleUploadsRemoved} */
+    private int[] sweepFiles(Instant cutoff) throws IOException {
+        if (!Files.isDirectory(uploadDir)) return new int[]{0, 0};
+        int orphans = 0;
+        int stale = 0;
+        List<Path> blobs = new ArrayList<>();
+        List<Path> flat = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(uploadDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (!Files.isRegularFile(file) || !olderThan(file, cutoff)) continue;
+                Path rel = uploadDir.relativize(file);
+                String name = rel.toString().replace('\\', '/');
+                if (name.startsWith(INCOMING_DIR + "/") || name.endsWith(".tmp")) {
+                    // staged uploads and half-written derivatives that never got moved into place
+                    if (deleteQuietly(file)) stale++;
+                } else if (PhotoDerivatives.isDerivative(name)) {
+                    if (!Files.exists(uploadDir.resolve(PhotoDerivatives.originalOf(name))) && deleteQuietly(file)) orphans++;
+                } else if (name.matches("[0-9a-f]{2}/[0-9a-f]{2}/[0-9a-f]{64}")) {
+                    blobs.add(file);
+                    if (blobs.size() >= SWEEP_BATCH) orphans += sweepBatch(blobs, true);
+                } else if (rel.getNameCount() == 1) {
+                    flat.add(file);
+                    if (flat.size() >= SWEEP_BATCH) orphans += sweepBatch(flat, false);
+                }
+            }
+        }
+        orphans += sweepBatch(blobs, true);
+        orphans += sweepBatch(flat, false);
+        return new int[]{orphans, stale};
+    }
+
+    /**
+     * Deletes the files of the batch that have no blob row (content-addressed) or no order_photo row (flat files).
+     */
+    private int sweepBatch(List<Path> files, boolean blobs) {
+        if (files.isEmpty()) return 0;
+        Map<String, Path> byKey = new LinkedHashMap<>();
+        // blob rows are keyed by the hash, flat rows by the file name: both are the last path element
+        for (Path f : files) byKey.put(f.getFileName().toString(), f);
+        files.clear();
+        String sql = blobs
+                ? "SELECT hash FROM photo_blob WHERE hash IN (?1)"
+                : "SELECT stored_filename FROM order_photo WHERE stored_filename IN (?1)";
+        @SuppressWarnings("unchecked")
+        List<String> known = txTemplate.execute(tx -> (List<String>) em.createNativeQuery(sql)
+                .setParameter(1, byKey.keySet())
+                .getResultList());
+        if (known != null) known.forEach(byKey::remove);
+        int n = 0;
+        for (Map.Entry<String, Path> e : byKey.entrySet()) {
+            if (deleteQuietly(e.getValue())) {
+                derivatives.delete(uploadDir.relativize(e.getValue()).toString().replace('\\', '/'));
+                n++;
+            }
+        }
+        return n;
+    }
+
+    static String blobName(String hash) {
+        return hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash;
+    }
+
+    private Path blobFile(String hash) {
+        return uploadDir.resolve(blobName(hash));
+    }
+
+    private static boolean olderThan(Path file, Instant cutoff) {
+        try {
+            FileTime t = Files.getLastModifiedTime(file);
+            return t.toInstant().isBefore(cutoff);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static boolean deleteQuietly(Path file) {
+        try {
+            return Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete {}: {}", file, e.getMessage());
+            return false;
+        }
+    }
+
+    private static Instant toInstant(Object dbValue) {
+        if (dbValue instanceof Timestamp ts) return ts.toInstant();
+        if (dbValue instanceof LocalDateTime ldt) return Timestamp.valueOf(ldt).toInstant();
+        return Instant.EPOCH;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
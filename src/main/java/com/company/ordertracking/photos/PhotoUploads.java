@@ -0,0 +1,290 @@
+package com.company.ordertracking.photos;
+
+import com.company.ordertracking.entity.OrderPhoto;
+import com.company.ordertracking.entity.PhotoUpload;
+import com.company.ordertracking.entity.SalesOrder;
+import com.company.ordertracking.repo.OrderPhotoRepository;
+import com.company.ordertracking.repo.PhotoUploadRepository;
+import com.company.ordertracking.repo.SalesOrderRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Resumable chunked photo uploads, for connections that drop half way through a large picture.
+ * <p>
+ * {@link #init} preallocates {@code <upload.dir>/.partial/<id>.part} at the final size; each chunk is then written
+ * at its own offset with positional {@link FileChannel} writes (chunks may arrive in any order, or twice), fsynced,
+ * and only then marked in the upload's bitmap. A client that lost its connection asks {@link #find} which chunks
+ * are missing and sends just those. {@link #complete} hashes the file and links it through {@link PhotoStore}.
+ * <p>
+ * Request bodies are copied through a small buffer, so the size limit does not depend on memory.
+ */
+@Component
+public class PhotoUploads {
+
+    private static final Logger log = LoggerFactory.getLogger(PhotoUploads.class);
+
+    static final String PARTIAL_DIR = ".partial";
+    private static final int COPY_BUFFER = 64 * 1024;
+
+    private final PhotoUploadRepository uploadRepo;
+    private final SalesOrderRepository orderRepo;
+    private final OrderPhotoRepository photoRepo;
+    private final PhotoStore photoStore;
+    private final TransactionTemplate txTemplate;
+    private final Path partialDir;
+    private final int chunkBytes;
+    private final long maxBytes;
+    private final long expireHours;
+
+    public PhotoUploads(PhotoUploadRepository uploadRepo,
+                        SalesOrderRepository orderRepo,
+                        OrderPhotoRepository photoRepo,
+                        PhotoStore photoStore,
+                        PlatformTransactionManager txManager,
+                        @Value("${app.upload.dir:uploads}") String uploadDir,
+                        @Value("${app.photos.upload.chunk-bytes:1048576}") int chunkBytes,
+                        @Value("${app.photos.upload.max-bytes:104857600}") long maxBytes,
+                        @Value("${app.photos.upload.expire-hours:24}") long expireHours) {
+        this.uploadRepo = uploadRepo;
+        this.orderRepo = orderRepo;
+        this.photoRepo = photoRepo;
+        this.photoStore = photoStore;
+        this.txTemplate = new TransactionTemplate(txManager);
+        this.partialDir = Paths.get(uploadDir).toAbsolutePath().normalize().resolve(PARTIAL_DIR);
+        this.chunkBytes = Math.max(64 * 1024, chunkBytes);
+        this.maxBytes = maxBytes;
+        this.expireHours = expireHours;
+    }
+
+    /**
+     * Starts an upload of {@code totalSize} bytes for an order.
+     */
+    public PhotoUpload init(Long orderId, String originalFilename, String contentType, long totalSize, String username)
+            throws IOException {
+        if (!orderRepo.existsById(orderId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Order not found");
+        }
+        if (contentType == null || !contentType.startsWith("image/")) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Only image uploads are allowed");
+        }
+        if (totalSize <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Empty file");
+        }
+        if (totalSize > maxBytes) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "Image too large (>" + maxBytes / (1024 * 1024) + "MB)");
+        }
+        // very large files get bigger chunks so the bitmap still fits
+        int chunk = (int) Math.max(chunkBytes, (totalSize + PhotoUpload.MAX_CHUNKS - 1) / PhotoUpload.MAX_CHUNKS);
+
+        PhotoUpload u = new PhotoUpload();
+        u.setId(UUID.randomUUID().toString());
+        u.setOrderId(orderId);
+        u.setOriginalFilename(originalFilename == null || originalFilename.isBlank()
+                ? "image" : Paths.get(originalFilename).getFileName().toString()); // prevent path traversal
+        u.setContentType(contentType);
+        u.setTotalSize(totalSize);
+        u.setChunkSize(chunk);
+        u.setReceivedChunks(new byte[(u.chunkCount() + 7) / 8]);
+        u.setUsername(username);
+
+        Files.createDirectories(partialDir);
+        try (RandomAccessFile raf = new RandomAccessFile(partFile(u.getId()).toFile(), "rw")) {
+            raf.setLength(totalSize);
+        }
+        return uploadRepo.save(u);
+    }
+
+    /**
+     * The upload, if it exists and belongs to {@code username}.
+     */
+    public PhotoUpload find(String id, String username) {
+        PhotoUpload u = uploadRepo.findById(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Upload not found"));
+        if (u.getUsername() != null && !u.getUsername().equals(username)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Upload belongs to another user");
+        }
+        return u;
+    }
+
+    /**
+     * Writes the chunk starting at byte {@code start} (bytes start..end inclusive of a {@code total}-byte file).
+     * The range must be exactly one chunk. Re-sending a chunk simply overwrites it.
+     */
+    public PhotoUpload writeChunk(String id, String username, long start, long end, long total, InputStream body)
+            throws IOException {
+        PhotoUpload u = find(id, username);
+        if (u.getPhotoId() != null) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Upload already completed");
+        }
+        long chunk = u.getChunkSize();
+        long expectedEnd = Math.min(start + chunk, u.getTotalSize()) - 1;
+        if (total != u.getTotalSize() || start < 0 || start % chunk != 0 || start >= u.getTotalSize() || end != expectedEnd) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Content-Range must cover exactly one chunk of " + chunk + " bytes of " + u.getTotalSize());
+        }
+        int index = (int) (start / chunk);
+        long length = end - start + 1;
+
+        Path part = partFile(id);
+        if (!Files.exists(part)) {
+            throw new ResponseStatusException(HttpStatus.GONE, "Upload data is gone; start a new upload");
+        }
+        try (FileChannel ch = FileChannel.open(part, StandardOpenOption.WRITE)) {
+            ByteBuffer buf = ByteBuffer.allocate(COPY_BUFFER);
+            long written = 0;
+            int n;
+            while ((n = body.read(buf.array(), 0, buf.capacity())) > 0) {
+                if (written + n > length) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Chunk body is longer than its Content-Range");
+                }
+                buf.position(0).limit(n);
+                while (buf.hasRemaining()) written += ch.write(buf, start + written);
+            }
+            if (written != length) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Chunk body has " + written + " bytes, Content-Range says " + length);
+            }
+            // on disk before the bitmap says so, so a resume after a crash never skips a lost chunk
+            ch.force(false);
+        }
+
+        return txTemplate.execute(tx -> {
+            PhotoUpload locked = uploadRepo.findForUpdate(id)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Upload not found"));
+            locked.markChunk(index);
+            locked.setUpdatedAt(LocalDateTime.now());
+            return uploadRepo.save(locked);
+        });
+    }
+
+    /**
+     * Links a fully received upload to a new order photo. Idempotent: completing again returns the same photo.
+     */
+    public OrderPhoto complete(String id, String username) throws IOException {
+        PhotoUpload u = find(id, username);
+        if (u.getPhotoId() != null) return existingPhoto(u);
+        if (!u.isComplete()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Missing chunks: " + missingChunks(u));
+        }
+        Path part = partFile(id);
+        if (!Files.exists(part)) {
+            throw new ResponseStatusException(HttpStatus.GONE, "Upload data is gone; start a new upload");
+        }
+        PhotoStore.Staged staged = photoStore.stage(part);
+        try {
+            return txTemplate.execute(tx -> {
+                PhotoUpload locked = uploadRepo.findForUpdate(id)
+                        .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Upload not found"));
+                // a concurrent complete got here first
+                if (locked.getPhotoId() != null) return existingPhoto(locked);
+                SalesOrder order = orderRepo.findById(locked.getOrderId())
+                        .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Order not found"));
+                OrderPhoto photo;
+                try {
+                    photo = photoStore.add(order, staged, locked.getOriginalFilename(), locked.getContentType());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                locked.setPhotoId(photo.getId());
+                locked.setUpdatedAt(LocalDateTime.now());
+                uploadRepo.save(locked);
+                return photo;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            photoStore.discard(staged);
+        }
+    }
+
+    public void abort(String id, String username) throws IOException {
+        PhotoUpload u = find(id, username);
+        uploadRepo.delete(u);
+        Files.deleteIfExists(partFile(id));
+    }
+
+    public static List<Integer> missingChunks(PhotoUpload u) {
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < u.chunkCount(); i++) {
+            if (!u.hasChunk(i)) missing.add(i);
+        }
+        return missing;
+    }
+
+    public static long receivedBytes(PhotoUpload u) {
+        long n = 0;
+        for (int i = 0; i < u.chunkCount(); i++) {
+            if (u.hasChunk(i)) n += Math.min(u.getChunkSize(), u.getTotalSize() - (long) i * u.getChunkSize());
+        }
+        return n;
+    }
+
+    /**
+     * Drops uploads untouched for {@code expire-hours} (completed ones included) and .part files without a row.
+     */
+    @Scheduled(cron = "${app.photos.upload.expire-cron:0 45 * * * *}")
+    public void expire() {
+        try {
+            LocalDateTime cutoff = LocalDateTime.now().minusHours(expireHours);
+            List<PhotoUpload> expired;
+            do {
+                expired = uploadRepo.findTop100ByUpdatedAtBefore(cutoff);
+                for (PhotoUpload u : expired) {
+                    uploadRepo.delete(u);
+                    Files.deleteIfExists(partFile(u.getId()));
+                }
+            } while (expired.size() == 100);
+
+            if (!Files.isDirectory(partialDir)) return;
+            try (Stream<Path> files = Files.list(partialDir)) {
+                for (Path f : (Iterable<Path>) files::iterator) {
+                    String name = f.getFileName().toString();
+                    if (!name.endsWith(".part")) continue;
+                    if (Files.getLastModifiedTime(f).toInstant()
+                            .isAfter(cutoff.atZone(ZoneId.systemDefault()).toInstant())) continue;
+                    if (!uploadRepo.existsById(name.substring(0, name.length() - ".part".length()))) {
+                        Files.deleteIfExists(f);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Photo upload expiry failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private OrderPhoto existingPhoto(PhotoUpload u) {
+        return photoRepo.findById(u.getPhotoId())
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.GONE, "The uploaded photo was deleted"));
+    }
+
+    private Path partFile(String id) {
+        // ids are server-generated UUIDs; refuse anything else so the path cannot escape the directory
+        if (!Objects.requireNonNull(id).matches("[0-9a-f-]{36}")) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Upload not found");
+        }
+        return partialDir.resolve(id + ".part");
+    }
+}
@@ -0,0 +1,678 @@
+package com.company.ordertracking.progress;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Coalesces shop-floor finished-quantity increments in memory and writes them to order_process in periodic batches.
+ * <p>
+ * An increment is fsynced to the local {@link ProgressJournal} and added to the process's {@link LongAdder}, then
+ * acknowledged; a background thread turns everything accumulated since the last flush into one multi-row UPDATE,
+ * together with the terminals' sequence numbers and the journal checkpoint, in a single transaction. After a crash the
+ * journal segments past the checkpoint are replayed at startup.
+ * <p>
+ * Increments are idempotent per terminal: each carries a sequence number that must increase, and one at or below the
+ * terminal's last accepted number is acknowledged as a duplicate without being counted. The database has the final
+ * word: every (terminal, seq) that reaches order_process is recorded in process_progress_seq by the same transaction,
+ * and flushes and replays skip the pairs already recorded there. Readers take the current total from
+ * {@link #finishedQuantity}.
+ * <p>
+ * Counters, sequence numbers and the journal live in one JVM, so only one instance ingests at a time: the one holding
+ * the lease in process_progress_lease (V23). It renews the lease in every flush transaction, which fails if the lease
+ * has passed to someone else. Other instances answer increments with 503 and take over once the lease is released
+ * (shutdown) or has expired, after replaying their own journal; checkpoints are kept per journal. A terminal that
+ * resends an increment to the new lease holder (the first instance journaled it but the answer was lost) has it
+ * counted there, and the first instance skips it when it replays its journal later.
+ * <p>
+ * Guarantee: an acknowledged increment is counted at most once, as long as its journal is replayed within
+ * app.progress.seq-retention-days. It is counted at least once only when its journal is replayed: increments left in the
+ * journal of an instance that does not come back are not in order_process until that journal directory is started
+ * again (on any instance).
+ */
+@Component
+public class ProcessProgress {
+
+    private static final Logger log = LoggerFactory.getLogger(ProcessProgress.class);
+
+    public record Result(long processId, long finishedQuantity, boolean duplicate) {}
+
+    public record Stats(boolean active, int trackedProcesses, int devices, long pendingIncrements, long accepted,
+                        long duplicates, long flushes, long rowsFlushed, long failedFlushes) {}
+
+    /** Processes per UPDATE statement. */
+    private static final int UPDATE_CHUNK = 500;
+    private static final long MAX_RETRY_BACKOFF_MS = 30_000;
+    private static final long SEQ_PRUNE_INTERVAL_NANOS = TimeUnit.HOURS.toNanos(1);
+
+    /** The lease row no longer names this instance; the flush transaction is rolled back. */
+    private static final class LeaseLostException extends RuntimeException {
+        LeaseLostException() {
+            super("process progress lease is held by another instance");
+        }
+    }
+
+    private static final class Counter {
+        final long processId;
+        final long orderId;
+        /** finished_quantity when the counter was loaded; flushes only move value from pending to persisted. */
+        final long base;
+        final LongAdder added = new LongAdder();
+        /** Part of {@link #added} already in order_process. Written by the flusher only. */
+        volatile long flushed;
+        volatile long lastTouched = System.nanoTime();
+
+        Counter(long processId, long orderId, long base) {
+            this.processId = processId;
+            this.orderId = orderId;
+            this.base = base;
+        }
+
+        long value() {
+            return base + added.sum();
+        }
+
+        long pending() {
+            return added.sum() - flushed;
+        }
+    }
+
+    private static final class Device {
+        long lastSeq;
+        boolean dirty;
+
+        Device(long lastSeq) {
+            this.lastSeq = lastSeq;
+        }
+    }
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private final TransactionTemplate txTemplate;
+    private final Path journalDir;
+    private final long flushIntervalMs;
+    private final long idleEvictNanos;
+    private final long leaseMicros;
+    private final long seqRetentionDays;
+
+    private final Map<Long, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Device> devices = new ConcurrentHashMap<>();
+    /**
+     * Increments hold the read lock while they journal and count; the flusher takes the write lock just long enough
+     * to rotate the journal and read the counters, so the closed segments hold exactly what the flush writes.
+     */
+    private final ReadWriteLock cut = new ReentrantReadWriteLock();
+    /** Entries journaled since the last cut, in journal order. */
+    private final Queue<ProgressJournal.Entry> journaled = new ConcurrentLinkedQueue<>();
+    /** Entries cut but not committed yet (kept across failed flushes). Owned by {@link #flush}. */
+    private final List<ProgressJournal.Entry> unflushed = new ArrayList<>();
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong rowsFlushed = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+
+    private ProgressJournal journal;
+    private String journalId;
+    /** Holds the lease and has replayed its journal; only then are increments accepted. */
+    private volatile boolean active;
+    private volatile long leaseRenewedAt;
+    private long seqsPrunedAt = System.nanoTime() - SEQ_PRUNE_INTERVAL_NANOS;
+    private volatile boolean running;
+    private Thread flusher;
+
+    public ProcessProgress(PlatformTransactionManager txManager,
+                           @Value("${app.progress.journal.dir:progress-journal}") String journalDir,
+                           @Value("${app.progress.flush-interval-ms:2000}") long flushIntervalMs,
+                           @Value("${app.progress.idle-evict-minutes:10}") long idleEvictMinutes,
+                           @Value("${app.progress.lease-seconds:30}") long leaseSeconds,
+                           @Value("${app.progress.seq-retention-days:30}") long seqRetentionDays) {
+        this.txTemplate = new TransactionTemplate(txManager);
+        // independent of whatever business transaction the caller may be in
+        this.txTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.journalDir = Paths.get(journalDir).toAbsolutePath().normalize();
+        this.flushIntervalMs = Math.max(10, flushIntervalMs);
+        this.idleEvictNanos = TimeUnit.MINUTES.toNanos(Math.max(1, idleEvictMinutes));
+        this.leaseMicros = TimeUnit.SECONDS.toMicros(Math.max(5, leaseSeconds));
+        this.seqRetentionDays = Math.max(1, seqRetentionDays);
+    }
+
+    @PostConstruct
+    void start() throws IOException {
+        journalId = ProgressJournal.identify(journalDir);
+        journal = new ProgressJournal(journalDir, loadCheckpoint());
+        if (!activate()) log.info("Process progress lease is held by another instance; standing by");
+        running = true;
+        flusher = new Thread(this::runFlusher, "process-progress-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Stop the flusher and write what is still pending; whatever does not make it stays in the journal.
+     */
+    @PreDestroy
+    void shutdown() throws InterruptedException, IOException {
+        if (flusher == null) return;
+        running = false;
+        LockSupport.unpark(flusher);
+        flusher.join(TimeUnit.SECONDS.toMillis(10));
+        try {
+            flush();
+        } catch (Exception e) {
+            log.warn("Process progress not fully flushed at shutdown: {}", e.getMessage());
+        }
+        if (active) {
+            try {
+                txTemplate.executeWithoutResult(tx -> em.createNativeQuery(
+                                "UPDATE process_progress_lease SET owner = NULL, lease_until = NULL WHERE id = 1 AND owner = ?1")
+                        .setParameter(1, journalId)
+                        .executeUpdate());
+            } catch (Exception e) {
+                log.warn("Process progress lease not released at shutdown, it expires on its own: {}", e.getMessage());
+            }
+        }
+        journal.close();
+    }
+
+    /**
+     * Adds {@code delta} to the finished quantity of a process on behalf of a terminal and returns the new value
+     * (persisted + pending). 404 when the process does not exist or belongs to another order.
+     */
+    public Result increment(long orderId, long processId, String deviceId, long seq, long delta) {
+        cut.readLock().lock();
+        try {
+            requireActive();
+            Device device = devices.computeIfAbsent(deviceId, this::loadDevice);
+            Counter c = counter(processId);
+            if (c == null || c.orderId != orderId) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "process not found");
+            }
+            synchronized (device) {
+                if (seq <= device.lastSeq) {
+                    duplicates.incrementAndGet();
+                    return new Result(processId, c.value(), true);
+                }
+                ProgressJournal.Entry entry = new ProgressJournal.Entry(processId, deviceId, seq, delta);
+                journal.append(entry);
+                journaled.add(entry);
+                c.added.add(delta);
+                c.lastTouched = System.nanoTime();
+                device.lastSeq = seq;
+                device.dirty = true;
+            }
+            accepted.incrementAndGet();
+            return new Result(processId, c.value(), false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            cut.readLock().unlock();
+        }
+    }
+
+    /**
+     * Journals a correction made from the process grid (a quantity typed over the current value). Going through the
+     * accumulator keeps it in step with increments that are still pending.
+     */
+    public void adjust(long processId, long delta) {
+        if (delta == 0) return;
+        cut.readLock().lock();
+        try {
+            requireActive();
+            Counter c = counter(processId);
+            if (c == null) return;
+            ProgressJournal.Entry entry = new ProgressJournal.Entry(processId, null, 0, delta);
+            journal.append(entry);
+            journaled.add(entry);
+            c.added.add(delta);
+            c.lastTouched = System.nanoTime();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            cut.readLock().unlock();
+        }
+    }
+
+    /**
+     * Journals grid corrections (process id -> delta) as part of the caller's transaction. They are applied right
+     * away, so a 503 (another instance holds the lease) or a journal failure propagates and rolls the caller back;
+     * if the transaction does not commit after all, the corrections are reverted with opposite adjustments.
+     */
+    public void adjustInTransaction(Map<Long, Long> deltas) {
+        if (deltas.isEmpty()) return;
+        Map<Long, Long> applied = new LinkedHashMap<>();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) return;
+                applied.forEach((processId, delta) -> {
+                    try {
+                        adjust(processId, -delta);
+                    } catch (RuntimeException e) {
+                        log.error("Rolled back correction {} of process {} could not be reverted: {}",
+                                delta, processId, e.getMessage());
+                    }
+                });
+            }
+        });
+        deltas.forEach((processId, delta) -> {
+            adjust(processId, delta);
+            applied.put(processId, delta);
+        });
+    }
+
+    /**
+     * Current finished quantity of a process: the counter's total while the process is tracked, otherwise
+     * {@code persisted} (the order_process value the caller read; an untracked process has nothing pending).
+     * The counter is not combined with a database read, which may or may not include a flush that just committed.
+     */
+    public long finishedQuantity(long processId, long persisted) {
+        Counter c = counters.get(processId);
+        return c == null ? persisted : c.value();
+    }
+
+    /** Whether this instance holds the lease and accepts increments and adjustments. */
+    public boolean active() {
+        return active;
+    }
+
+    public Stats stats() {
+        long pending = 0;
+        for (Counter c : counters.values()) pending += c.pending();
+        return new Stats(active, counters.size(), devices.size(), pending, accepted.get(), duplicates.get(),
+                flushes.get(), rowsFlushed.get(), failedFlushes.get());
+    }
+
+    /**
+     * Writes everything accumulated since the last successful flush. Returns the number of processes updated.
+     * On failure nothing is marked as flushed and the journal keeps the segments, so the next run retries.
+     */
+    synchronized int flush() throws IOException {
+        if (!active) return 0;
+        long segment;
+        Map<Counter, Long> totals = new LinkedHashMap<>();
+        Map<String, Long> seqs = new LinkedHashMap<>();
+        boolean idle = false;
+        cut.writeLock().lock();
+        try {
+            long now = System.nanoTime();
+            for (Iterator<Counter> it = counters.values().iterator(); it.hasNext(); ) {
+                Counter c = it.next();
+                long total = c.added.sum();
+                if (total != c.flushed) totals.put(c, total);
+                else if (now - c.lastTouched > idleEvictNanos) it.remove();
+            }
+            for (Map.Entry<String, Device> e : devices.entrySet()) {
+                Device d = e.getValue();
+                synchronized (d) {
+                    if (!d.dirty) continue;
+                    seqs.put(e.getKey(), d.lastSeq);
+                    d.dirty = false;
+                }
+            }
+            for (ProgressJournal.Entry e; (e = journaled.poll()) != null; ) unflushed.add(e);
+            // idle: keep appending to the same segment rather than creating one file per interval
+            idle = totals.isEmpty() && seqs.isEmpty() && unflushed.isEmpty();
+            segment = idle ? 0 : journal.rotate();
+        } finally {
+            cut.writeLock().unlock();
+        }
+        if (idle) {
+            if (System.nanoTime() - leaseRenewedAt > TimeUnit.MICROSECONDS.toNanos(leaseMicros) / 3) {
+                renewLease(System.nanoTime());
+            }
+            if (System.nanoTime() - seqsPrunedAt > SEQ_PRUNE_INTERVAL_NANOS) pruneSeqs();
+            return 0;
+        }
+
+        long started = System.nanoTime();
+        Persisted persisted;
+        try {
+            persisted = txTemplate.execute(tx -> persist(unflushed, seqs, segment));
+        } catch (RuntimeException e) {
+            for (String deviceId : seqs.keySet()) {
+                Device d = devices.get(deviceId);
+                synchronized (d) {
+                    d.dirty = true;
+                }
+            }
+            if (e instanceof LeaseLostException) deactivate();
+            throw e;
+        }
+        leaseRenewedAt = started;
+        totals.forEach((c, total) -> c.flushed = total);
+        for (ProgressJournal.Entry e : persisted.skipped()) {
+            // counted by another instance before; take it back out of the in-memory total
+            Counter c = counters.get(e.processId());
+            if (c == null) continue;
+            c.added.add(-e.delta());
+            c.flushed -= e.delta();
+        }
+        if (!persisted.skipped().isEmpty()) {
+            log.warn("Skipped {} process progress increments already counted by another instance", persisted.skipped().size());
+        }
+        unflushed.clear();
+        journal.deleteUpTo(segment);
+        if (persisted.processes() > 0) {
+            flushes.incrementAndGet();
+            rowsFlushed.addAndGet(persisted.processes());
+        }
+        return persisted.processes();
+    }
+
+    private void runFlusher() {
+        int attempt = 0;
+        while (running) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(
+                    attempt == 0 ? flushIntervalMs : Math.min(MAX_RETRY_BACKOFF_MS, flushIntervalMs << Math.min(attempt, 16))));
+            if (!running) break;
+            try {
+                if (active) flush();
+                else activate();
+                attempt = 0;
+            } catch (Exception e) {
+                failedFlushes.incrementAndGet();
+                attempt++;
+                log.warn("Process progress flush failed, retrying: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Takes the lease if it is free, expired or already ours, then applies what this instance's journal still holds.
+     * Returns whether increments are accepted now.
+     */
+    private synchronized boolean activate() throws IOException {
+        if (active) return true;
+        long started = System.nanoTime();
+        int taken = txTemplate.execute(tx -> em.createNativeQuery(
+                        "UPDATE process_progress_lease SET owner = ?1, "
+                                + "lease_until = TIMESTAMPADD(MICROSECOND, ?2, CURRENT_TIMESTAMP(6)) "
+                                + "WHERE id = 1 AND (owner IS NULL OR owner = ?1 OR lease_until < CURRENT_TIMESTAMP(6))")
+                .setParameter(1, journalId)
+                .setParameter(2, leaseMicros)
+                .executeUpdate());
+        if (taken == 0) return false;
+        leaseRenewedAt = started;
+        replay(loadCheckpoint());
+        active = true;
+        log.info("Process progress ingestion active on this instance (journal {})", journalId);
+        return true;
+    }
+
+    /**
+     * The lease went to another instance (this one could not renew it in time): stop accepting increments and forget
+     * the counters. What they held is still in the journal past the checkpoint and is replayed on the next
+     * {@link #activate}.
+     */
+    private void deactivate() {
+        cut.writeLock().lock();
+        try {
+            if (!active) return;
+            active = false;
+            counters.clear();
+            devices.clear();
+            journaled.clear();
+            unflushed.clear();
+            journal.rotate();
+        } catch (IOException e) {
+            log.warn("Could not close the process progress journal segment: {}", e.getMessage());
+        } finally {
+            cut.writeLock().unlock();
+        }
+        log.warn("Process progress lease lost to another instance; standing by");
+    }
+
+    private void requireActive() {
+        if (!active) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "process progress is handled by another instance");
+        }
+    }
+
+    private void renewLease(long started) {
+        try {
+            txTemplate.executeWithoutResult(tx -> extendLease());
+            leaseRenewedAt = started;
+        } catch (LeaseLostException e) {
+            deactivate();
+            throw e;
+        }
+    }
+
+    /** Must run in the transaction that writes order_process, so a flush never commits without the lease. */
+    private void extendLease() {
+        int n = em.createNativeQuery("UPDATE process_progress_lease "
+                        + "SET lease_until = TIMESTAMPADD(MICROSECOND, ?2, CURRENT_TIMESTAMP(6)) WHERE id = 1 AND owner = ?1")
+                .setParameter(1, journalId)
+                .setParameter(2, leaseMicros)
+                .executeUpdate();
+        if (n == 0) throw new LeaseLostException();
+    }
+
+    /** Checkpoint of this instance's journal, created at segment 0 on first use. */
+    private long loadCheckpoint() {
+        return txTemplate.execute(tx -> {
+            List<?> rows = em.createNativeQuery("SELECT segment_no FROM process_progress_checkpoint WHERE journal_id = ?1")
+                    .setParameter(1, journalId)
+                    .getResultList();
+            if (!rows.isEmpty()) return ((Number) rows.get(0)).longValue();
+            em.createNativeQuery("INSERT INTO process_progress_checkpoint (journal_id, segment_no, updated_at) VALUES (?1, 0, ?2)")
+                    .setParameter(1, journalId)
+                    .setParameter(2, LocalDateTime.now())
+                    .executeUpdate();
+            return 0L;
+        });
+    }
+
+    /**
+     * Applies the journal segments a crash left behind (those past the checkpoint) before anything new is accepted.
+     */
+    private void replay(long checkpoint) throws IOException {
+        long last = journal.lastClosedSegment();
+        if (last <= checkpoint) {
+            // a crash between the flush commit and the segment cleanup leaves segments that are already applied
+            journal.deleteUpTo(checkpoint);
+            return;
+        }
+        List<ProgressJournal.Entry> entries = journal.readAfter(checkpoint);
+        Map<String, Long> seqs = new LinkedHashMap<>();
+        for (ProgressJournal.Entry e : entries) {
+            if (e.deviceId() != null) seqs.merge(e.deviceId(), e.seq(), Math::max);
+        }
+        Persisted persisted = txTemplate.execute(tx -> persist(entries, seqs, last));
+        journal.deleteUpTo(last);
+        if (!entries.isEmpty()) {
+            log.info("Replayed {} process progress increments for {} processes from the journal ({} already counted)",
+                    entries.size(), persisted.processes(), persisted.skipped().size());
+        }
+    }
+
+    /** {@code processes}: order_process rows updated; {@code skipped}: entries whose (device, seq) was already counted. */
+    private record Persisted(int processes, List<ProgressJournal.Entry> skipped) {}
+
+    private Persisted persist(List<ProgressJournal.Entry> entries, Map<String, Long> seqs, long segment) {
+        extendLease();
+        List<ProgressJournal.Entry> skipped = recordSeqs(entries);
+        Set<ProgressJournal.Entry> skip = Collections.newSetFromMap(new IdentityHashMap<>());
+        skip.addAll(skipped);
+        Map<Long, Long> deltas = new LinkedHashMap<>();
+        for (ProgressJournal.Entry e : entries) {
+            if (!skip.contains(e)) deltas.merge(e.processId(), e.delta(), Long::sum);
+        }
+        List<Map.Entry<Long, Long>> rows = new ArrayList<>(deltas.entrySet());
+        for (int from = 0; from < rows.size(); from += UPDATE_CHUNK) {
+            updateQuantities(rows.subList(from, Math.min(rows.size(), from + UPDATE_CHUNK)));
+        }
+        if (!seqs.isEmpty()) upsertDevices(seqs);
+        em.createNativeQuery("UPDATE process_progress_checkpoint SET segment_no = ?1, updated_at = ?2 WHERE journal_id = ?3")
+                .setParameter(1, segment)
+                .setParameter(2, LocalDateTime.now())
+                .setParameter(3, journalId)
+                .executeUpdate();
+        return new Persisted(rows.size(), skipped);
+    }
+
+    /**
+     * Records the (device, seq) of every terminal entry in process_progress_seq and returns the entries whose pair was
+     * already there (or appears twice in {@code entries}). Runs after {@link #extendLease}, whose row lock serializes
+     * this with any other instance's flush.
+     */
+    private List<ProgressJournal.Entry> recordSeqs(List<ProgressJournal.Entry> entries) {
+        List<ProgressJournal.Entry> terminal = entries.stream().filter(e -> e.deviceId() != null).toList();
+        List<ProgressJournal.Entry> skipped = new ArrayList<>();
+        for (int from = 0; from < terminal.size(); from += UPDATE_CHUNK) {
+            List<ProgressJournal.Entry> chunk = terminal.subList(from, Math.min(terminal.size(), from + UPDATE_CHUNK));
+            StringBuilder sql = new StringBuilder("SELECT device_id, seq FROM process_progress_seq WHERE (device_id, seq) IN (");
+            int i = 0;
+            for (int n = 0; n < chunk.size(); n++) {
+                sql.append(n > 0 ? ", (?" : "(?").append(++i).append(", ?").append(++i).append(')');
+            }
+            sql.append(')');
+            Query q = em.createNativeQuery(sql.toString());
+            i = 0;
+            for (ProgressJournal.Entry e : chunk) {
+                q.setParameter(++i, e.deviceId());
+                q.setParameter(++i, e.seq());
+            }
+            Set<String> seen = new HashSet<>();
+            for (Object row : q.getResultList()) {
+                Object[] r = (Object[]) row;
+                seen.add(r[0] + "\n" + ((Number) r[1]).longValue());
+            }
+            List<ProgressJournal.Entry> fresh = new ArrayList<>();
+            for (ProgressJournal.Entry e : chunk) {
+                if (seen.add(e.deviceId() + "\n" + e.seq())) fresh.add(e);
+                else skipped.add(e);
+            }
+            if (!fresh.isEmpty()) insertSeqs(fresh);
+        }
+        return skipped;
+    }
+
+    private void insertSeqs(List<ProgressJournal.Entry> entries) {
+        StringBuilder sql = new StringBuilder("INSERT INTO process_progress_seq (device_id, seq, created_at) VALUES ");
+        int i = 0;
+        for (int n = 0; n < entries.size(); n++) {
+            if (n > 0) sql.append(", ");
+            sql.append("(?").append(++i).append(", ?").append(++i).append(", ?").append(++i).append(')');
+        }
+        Query q = em.createNativeQuery(sql.toString());
+        LocalDateTime now = LocalDateTime.now();
+        i = 0;
+        for (ProgressJournal.Entry e : entries) {
+            q.setParameter(++i, e.deviceId());
+            q.setParameter(++i, e.seq());
+            q.setParameter(++i, now);
+        }
+        q.executeUpdate();
+    }
+
+    private void pruneSeqs() {
+        seqsPrunedAt = System.nanoTime();
+        try {
+            int n = txTemplate.execute(tx -> em.createNativeQuery("DELETE FROM process_progress_seq WHERE created_at < ?1")
+                    .setParameter(1, LocalDateTime.now().minusDays(seqRetentionDays))
+                    .executeUpdate());
+            if (n > 0) log.info("Pruned {} process progress sequence numbers older than {} days", n, seqRetentionDays);
+        } catch (Exception e) {
+            log.warn("Could not prune process progress sequence numbers: {}", e.getMessage());
+        }
+    }
+
+    private void updateQuantities(List<Map.Entry<Long, Long>> rows) {
+        // one statement per chunk; rows of deleted processes simply match nothing
+        StringBuilder sql = new StringBuilder(
+                "UPDATE order_process SET finished_quantity = GREATEST(0, finished_quantity + CASE id");
+        int i = 0;
+        for (int n = 0; n < rows.size(); n++) {
+            sql.append(" WHEN ?").append(++i).append(" THEN ?").append(++i);
+        }
+        sql.append(" END) WHERE id IN (");
+        for (int n = 0; n < rows.size(); n++) {
+            sql.append(n > 0 ? ", ?" : "?").append(++i);
+        }
+        sql.append(')');
+        Query q = em.createNativeQuery(sql.toString());
+        i = 0;
+        for (Map.Entry<Long, Long> r : rows) {
+            q.setParameter(++i, r.getKey());
+            q.setParameter(++i, r.getValue());
+        }
+        for (Map.Entry<Long, Long> r : rows) q.setParameter(++i, r.getKey());
+        q.executeUpdate();
+    }
+
+    private void upsertDevices(Map<String, Long> seqs) {
+        StringBuilder sql = new StringBuilder("INSERT INTO process_progress_device (device_id, last_seq, updated_at) VALUES ");
+        int i = 0;
+        for (int n = 0; n < seqs.size(); n++) {
+            if (n > 0) sql.append(", ");
+            sql.append("(?").append(++i).append(", ?").append(++i).append(", ?").append(++i).append(')');
+        }
+        sql.append(" ON DUPLICATE KEY UPDATE last_seq = GREATEST(last_seq, VALUES(last_seq)), updated_at = VALUES(updated_at)");
+        Query q = em.createNativeQuery(sql.toString());
+        LocalDateTime now = LocalDateTime.now();
+        i = 0;
+        for (Map.Entry<String, Long> e : seqs.entrySet()) {
+            q.setParameter(++i, e.getKey());
+            q.setParameter(++i, e.getValue());
+            q.setParameter(++i, now);
+        }
+        q.executeUpdate();
+    }
+
+    /** Called with the read lock held, so the flusher cannot evict the counter before the caller has used it. */
+    private Counter counter(long processId) {
+        Counter c = counters.get(processId);
+        if (c != null) return c;
+        Object[] row = txTemplate.execute(tx -> {
+            List<?> rows = em.createNativeQuery("SELECT order_id, finished_quantity FROM order_process WHERE id = ?1")
+                    .setParameter(1, processId)
+                    .getResultList();
+            return rows.isEmpty() ? null : (Object[]) rows.get(0);
+        });
+        if (row == null) return null;
+        return counters.computeIfAbsent(processId,
+                id -> new Counter(id, ((Number) row[0]).longValue(), ((Number) row[1]).longValue()));
+    }
+
+    private Device loadDevice(String deviceId) {
+        Number last = txTemplate.execute(tx -> {
+            List<?> rows = em.createNativeQuery("SELECT last_seq FROM process_progress_device WHERE device_id = ?1")
+                    .setParameter(1, deviceId)
+                    .getResultList();
+            return rows.isEmpty() ? null : (Number) rows.get(0);
+        });
+        return new Device(last == null ? 0 : last.longValue());
+    }
+}
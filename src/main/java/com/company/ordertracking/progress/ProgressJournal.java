@@ -0,0 +1,243 @@
+package com.company.ordertracking.progress;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only local journal of process progress increments that are not in order_process yet, split into numbered
+ * segment files ({@code progress-0000000000000001.log}, ...). Same frame layout as the audit journal:
+ * {@code [int payloadLength][int crc32(payload)][payload]}; a short frame or a CRC mismatch is the torn tail of a
+ * segment written during a crash.
+ * <p>
+ * Each flush {@link #rotate rotates} to a new segment, so every closed segment belongs to exactly one flush and is
+ * deleted once that flush has committed. Every process start opens a fresh segment.
+ * <p>
+ * Segment numbers only mean something for the journal that wrote them, so checkpoints are kept per journal, under the
+ * random id stored in {@code journal.id} next to the segments.
+ */
+class ProgressJournal implements Closeable {
+
+    /** deviceId is null (and seq 0) for adjustments made from the process grid. */
+    record Entry(long processId, String deviceId, long seq, long delta) {}
+
+    private static final String ID_FILE = "journal.id";
+
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_FRAME_BYTES = 64 * 1024;
+
+    private final Path dir;
+
+    private final Object appendLock = new Object();
+    private final Object syncLock = new Object();
+    private FileChannel active;
+    private long activeSegment;
+    private long writtenSeq;
+    private volatile long syncedSeq;
+
+    /**
+     * Id of the journal in {@code dir}, created (and fsynced) on first use.
+     */
+    static String identify(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        Path file = dir.resolve(ID_FILE);
+        if (Files.exists(file)) return Files.readString(file, StandardCharsets.UTF_8).trim();
+        String id = UUID.randomUUID().toString();
+        Path tmp = dir.resolve(ID_FILE + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer buf = ByteBuffer.wrap(id.getBytes(StandardCharsets.UTF_8));
+            while (buf.hasRemaining()) ch.write(buf);
+            ch.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+        return id;
+    }
+
+    ProgressJournal(Path dir, long minSegment) throws IOException {
+        this.dir = dir;
+        Files.createDirectories(dir);
+        long last = segments().stream().mapToLong(Long::longValue).max().orElse(0L);
+        openSegment(Math.max(last, minSegment) + 1);
+    }
+
+    /**
+     * Appends one entry and returns once it has been fsynced. Callers arriving while another caller's force() is
+     * in progress are covered by the next single force().
+     */
+    void append(Entry entry) throws IOException {
+        ByteBuffer frame = frame(encode(entry));
+        long seq;
+        synchronized (appendLock) {
+            while (frame.hasRemaining()) active.write(frame);
+            seq = ++writtenSeq;
+        }
+        if (syncedSeq >= seq) return;
+        synchronized (syncLock) {
+            if (syncedSeq >= seq) return;
+            FileChannel ch;
+            long upTo;
+            synchronized (appendLock) {
+                ch = active;
+                upTo = writtenSeq;
+            }
+            try {
+                ch.force(false);
+            } catch (ClosedChannelException e) {
+                // rotated in the meantime; the old segment was forced before it was closed
+            }
+            syncedSeq = upTo;
+        }
+    }
+
+    /**
+     * Closes the active segment and starts the next one. Returns the number of the segment just closed.
+     */
+    long rotate() throws IOException {
+        synchronized (appendLock) {
+            active.force(false);
+            active.close();
+            long closed = activeSegment;
+            openSegment(closed + 1);
+            return closed;
+        }
+    }
+
+    /**
+     * All entries of the segments numbered above {@code afterSegment}, oldest first. Only used at startup, before
+     * anything is appended.
+     */
+    List<Entry> readAfter(long afterSegment) throws IOException {
+        List<Entry> out = new ArrayList<>();
+        for (long s : segments()) {
+            if (s <= afterSegment || s == activeSegment) continue;
+            try (FileChannel ch = FileChannel.open(segmentFile(s), StandardOpenOption.READ)) {
+                readFrames(ch, ch.size(), out);
+            }
+        }
+        return out;
+    }
+
+    /** Highest closed segment number, or 0 when there is none. */
+    long lastClosedSegment() throws IOException {
+        return segments().stream().mapToLong(Long::longValue).filter(s -> s < activeSegment).max().orElse(0L);
+    }
+
+    /**
+     * Removes the closed segments numbered up to and including {@code segment}.
+     */
+    void deleteUpTo(long segment) throws IOException {
+        for (long s : segments()) {
+            if (s <= segment && s != activeSegment) Files.deleteIfExists(segmentFile(s));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (appendLock) {
+            if (active.isOpen()) {
+                active.force(false);
+                active.close();
+            }
+        }
+    }
+
+    private static void readFrames(FileChannel ch, long end, List<Entry> out) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        long offset = 0;
+        while (offset + HEADER_BYTES <= end) {
+            header.clear();
+            readFully(ch, header, offset);
+            header.flip();
+            int len = header.getInt();
+            int crc = header.getInt();
+            if (len < 0 || len > MAX_FRAME_BYTES || offset + HEADER_BYTES + len > end) return; // torn tail
+            ByteBuffer payload = ByteBuffer.allocate(len);
+            readFully(ch, payload, offset + HEADER_BYTES);
+            if (crc32(payload.array()) != crc) return;
+            out.add(decode(payload.array()));
+            offset += HEADER_BYTES + len;
+        }
+    }
+
+    private void openSegment(long segment) throws IOException {
+        active = FileChannel.open(segmentFile(segment), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        activeSegment = segment;
+    }
+
+    private List<Long> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(p -> p.getFileName().toString())
+                    .filter(n -> n.startsWith("progress-") && n.endsWith(".log"))
+                    .map(n -> n.substring("progress-".length(), n.length() - ".log".length()))
+                    .filter(n -> n.chars().allMatch(Character::isDigit) && !n.isEmpty())
+                    .map(Long::parseLong)
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path segmentFile(long segment) {
+        return dir.resolve(String.format("progress-%016d.log", segment));
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, position + buf.position());
+            if (n < 0) throw new EOFException();
+        }
+    }
+
+    private static ByteBuffer frame(byte[] payload) {
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        buf.putInt(payload.length).putInt(crc32(payload)).put(payload).flip();
+        return buf;
+    }
+
+    private static int crc32(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] encode(Entry e) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(e.processId());
+            out.writeLong(e.seq());
+            out.writeLong(e.delta());
+            if (e.deviceId() == null) {
+                out.writeInt(-1);
+            } else {
+                byte[] b = e.deviceId().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(b.length);
+                out.write(b);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Entry decode(byte[] payload) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            long processId = in.readLong();
+            long seq = in.readLong();
+            long delta = in.readLong();
+            int len = in.readInt();
+            String deviceId = null;
+            if (len >= 0) {
+                byte[] b = new byte[len];
+                in.readFully(b);
+                deviceId = new String(b, StandardCharsets.UTF_8);
+            }
+            return new Entry(processId, deviceId, seq, delta);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.company.ordertracking.repo;
+
+import org.hibernate.boot.model.FunctionContributions;
+import org.hibernate.boot.model.FunctionContributor;
+import org.hibernate.type.StandardBasicTypes;
+
+/**
+ * Registers {@code audit_logs_match(content, query)} so criteria queries can use the MySQL FULLTEXT index
+ * ft_audit_logs_text_content on audit_logs_text (V16). Renders MATCH ... AGAINST in boolean mode.
+ * <p>
+ * Registered through META-INF/services/org.hibernate.boot.model.FunctionContributor.
+ */
+public class AuditLogFullTextFunction implements FunctionContributor {
+
+    public static final String NAME = "audit_logs_match";
+
+    @Override
+    public void contributeFunctions(FunctionContributions contributions) {
+        contributions.getFunctionRegistry().registerPattern(
+                NAME,
+                "match(?1) against (?2 in boolean mode)",
+                contributions.getTypeConfiguration().getBasicTypeRegistry().resolve(StandardBasicTypes.DOUBLE));
+    }
+}
@@ -0,0 +1,16 @@
+package com.company.ordertracking.repo;
+
+import com.company.ordertracking.entity.AuditLog;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.stream.Stream;
+
+public interface AuditLogRepositoryCustom {
+
+    /**
+     * Matching rows newest first by (createdAt, id), read through a forward-only cursor for exports.
+     * Each row is detached once handed out, so the persistence context does not grow with the result.
+     * Must be consumed (and closed) inside a transaction.
+     */
+    Stream<AuditLog> stream(Specification<AuditLog> spec);
+}
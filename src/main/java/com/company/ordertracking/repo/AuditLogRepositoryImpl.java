@@ -0,0 +1,35 @@
+package com.company.ordertracking.repo;
+
+import com.company.ordertracking.entity.AuditLog;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.*;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.stream.Stream;
+
+/**
+ * Custom read paths for {@link AuditLogRepository} (picked up by the "Impl" naming convention).
+ */
+class AuditLogRepositoryImpl implements AuditLogRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Override
+    public Stream<AuditLog> stream(Specification<AuditLog> spec) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<AuditLog> cq = cb.createQuery(AuditLog.class);
+        Root<AuditLog> a = cq.from(AuditLog.class);
+        Predicate where = spec == null ? null : spec.toPredicate(a, cq, cb);
+        if (where != null) cq.where(where);
+        cq.orderBy(cb.desc(a.get("createdAt")), cb.desc(a.get("id")));
+
+        return em.createQuery(cq)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, SalesOrderRepositoryImpl.STREAMING_FETCH_SIZE)
+                .getResultStream()
+                .peek(em::detach);
+    }
+}
@@ -0,0 +1,7 @@
+package com.company.ordertracking.repo;
+
+import com.company.ordertracking.entity.AuditLogText;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface AuditLogTextRepository extends JpaRepository<AuditLogText, Long> {
+}
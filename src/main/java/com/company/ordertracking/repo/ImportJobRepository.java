@@ -0,0 +1,7 @@
+package com.company.ordertracking.repo;
+
+import com.company.ordertracking.entity.ImportJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface ImportJobRepository extends JpaRepository<ImportJob, Long> {
+}
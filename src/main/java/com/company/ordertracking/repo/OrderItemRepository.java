@@ -0,0 +1,11 @@
+package com.company.ordertracking.repo;
+
+import com.company.ordertracking.entity.OrderItem;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
+    List<OrderItem> findByOrder_IdInOrderByIdAsc(Collection<Long> orderIds);
+}
@@ -3,8 +3,15 @@ package com.company.ordertracking.repo;
 import com.company.ordertracking.entity.OrderPhoto;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface OrderPhotoRepository extends JpaRepository<OrderPhoto, Long> {
     List<OrderPhoto> findByOrder_IdOrderByCreatedAtDesc(Long orderId);
+
+    /** Keyset page over all photos, for background passes such as the derivative backfill. */
+    List<OrderPhoto> findTop200ByIdGreaterThanOrderByIdAsc(Long afterId);
+
+    /** Photos of a batch of orders, grouped by order, for the ZIP downloads. */
+    List<OrderPhoto> findByOrder_IdInOrderByOrder_IdAscIdAsc(Collection<Long> orderIds);
 }
@@ -0,0 +1,21 @@
+package com.company.ordertracking.repo;
+
+import com.company.ordertracking.entity.PhotoUpload;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface PhotoUploadRepository extends JpaRepository<PhotoUpload, String> {
+
+    /** Row-locked read: concurrent chunk PUTs of one upload update the bitmap one at a time. */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select u from PhotoUpload u where u.id = ?1")
+    Optional<PhotoUpload> findForUpdate(String id);
+
+    List<PhotoUpload> findTop100ByUpdatedAtBefore(LocalDateTime cutoff);
+}
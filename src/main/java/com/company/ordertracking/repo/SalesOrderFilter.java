@@ -0,0 +1,20 @@
+package com.company.ordertracking.repo;
+
+import com.company.ordertracking.entity.OrderStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Server-side filters for the order list (all optional; blank strings are ignored).
+ * customerName / orderNo are prefix matches so they can use the sales_order indexes.
+ */
+public record SalesOrderFilter(OrderStatus status,
+                               LocalDateTime createdFrom,
+                               LocalDateTime createdTo,
+                               String customerName,
+                               String orderNo) {
+
+    public static SalesOrderFilter none() {
+        return new SalesOrderFilter(null, null, null, null, null);
+    }
+}
@@ -0,0 +1,28 @@
+package com.company.ordertracking.repo;
+
+import com.company.ordertracking.entity.OrderStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Flat order + line item row for exports (one row per item; orders without items yield one row with null item fields).
+ * Sensitive columns: customerName / contact / currency / paymentTerms / totalAmount / unitPrice.
+ */
+public record SalesOrderItemRow(Long orderId,
+                                String orderNo,
+                                OrderStatus status,
+                                String customerName,
+                                String contact,
+                                String currency,
+                                String paymentTerms,
+                                BigDecimal totalAmount,
+                                String productReq,
+                                String packagingReq,
+                                LocalDateTime createdAt,
+                                String productName,
+                                String spec,
+                                Integer quantity,
+                                Double unitPrice,
+                                String notes) {
+}
@@ -2,11 +2,13 @@ package com.company.ordertracking.repo;
 
 import com.company.ordertracking.entity.SalesOrder;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 
 import java.util.Collection;
 import java.util.List;
 
-public interface SalesOrderRepository extends JpaRepository<SalesOrder, Long> {
+public interface SalesOrderRepository extends JpaRepository<SalesOrder, Long>, JpaSpecificationExecutor<SalesOrder>,
+        SalesOrderRepositoryCustom {
 
     boolean existsByOrderNo(String orderNo);
 
@@ -0,0 +1,28 @@
+package com.company.ordertracking.repo;
+
+import com.company.ordertracking.entity.SalesOrder;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface SalesOrderRepositoryCustom {
+
+    /**
+     * Projection query for list screens: newest first by (createdAt, id), at most {@code limit} rows.
+     * Rows are plain DTOs, so nothing is added to the persistence context.
+     */
+    List<SalesOrderSummary> findSummaries(Specification<SalesOrder> spec, int limit);
+
+    /**
+     * Same projection as {@link #findSummaries}, but read through a forward-only cursor for exports.
+     * Must be consumed (and closed) inside a transaction.
+     */
+    Stream<SalesOrderSummary> streamSummaries(Specification<SalesOrder> spec);
+
+    /**
+     * Orders joined with their items (newest order first, items by id), read through a forward-only cursor.
+     * Must be consumed (and closed) inside a transaction.
+     */
+    Stream<SalesOrderItemRow> streamItemRows(Specification<SalesOrder> spec);
+}
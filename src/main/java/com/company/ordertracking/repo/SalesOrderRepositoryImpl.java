@@ -0,0 +1,102 @@
+package com.company.ordertracking.repo;
+
+import com.company.ordertracking.entity.OrderItem;
+import com.company.ordertracking.entity.SalesOrder;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.*;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Custom read paths for {@link SalesOrderRepository} (picked up by the "Impl" naming convention).
+ */
+class SalesOrderRepositoryImpl implements SalesOrderRepositoryCustom {
+
+    /**
+     * MySQL Connector/J only streams row by row (instead of buffering the whole result set)
+     * when the fetch size is Integer.MIN_VALUE.
+     */
+    static final int STREAMING_FETCH_SIZE = Integer.MIN_VALUE;
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Override
+    public List<SalesOrderSummary> findSummaries(Specification<SalesOrder> spec, int limit) {
+        return summaryQuery(spec)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public Stream<SalesOrderSummary> streamSummaries(Specification<SalesOrder> spec) {
+        // getResultStream() is backed by a forward-only ScrollableResults
+        return summaryQuery(spec)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, STREAMING_FETCH_SIZE)
+                .getResultStream();
+    }
+
+    @Override
+    public Stream<SalesOrderItemRow> streamItemRows(Specification<SalesOrder> spec) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<SalesOrderItemRow> cq = cb.createQuery(SalesOrderItemRow.class);
+        Root<SalesOrder> o = cq.from(SalesOrder.class);
+        Join<SalesOrder, OrderItem> i = o.join("items", JoinType.LEFT);
+
+        cq.select(cb.construct(SalesOrderItemRow.class,
+                o.get("id"),
+                o.get("orderNo"),
+                o.get("status"),
+                o.get("customerName"),
+                o.get("contact"),
+                o.get("currency"),
+                o.get("paymentTerms"),
+                o.get("totalAmount"),
+                o.get("productReq"),
+                o.get("packagingReq"),
+                o.get("createdAt"),
+                i.get("productName"),
+                i.get("spec"),
+                i.get("quantity"),
+                i.get("unitPrice"),
+                i.get("notes")));
+        Predicate where = spec == null ? null : spec.toPredicate(o, cq, cb);
+        if (where != null) cq.where(where);
+        cq.orderBy(cb.desc(o.get("createdAt")), cb.desc(o.get("id")), cb.asc(i.get("id")));
+
+        return em.createQuery(cq)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, STREAMING_FETCH_SIZE)
+                .getResultStream();
+    }
+
+    private TypedQuery<SalesOrderSummary> summaryQuery(Specification<SalesOrder> spec) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<SalesOrderSummary> cq = cb.createQuery(SalesOrderSummary.class);
+        Root<SalesOrder> o = cq.from(SalesOrder.class);
+
+        Subquery<Long> itemCount = cq.subquery(Long.class);
+        Root<OrderItem> i = itemCount.from(OrderItem.class);
+        itemCount.select(cb.count(i)).where(cb.equal(i.get("order").get("id"), o.get("id")));
+
+        cq.select(cb.construct(SalesOrderSummary.class,
+                o.get("id"),
+                o.get("orderNo"),
+                o.get("status"),
+                o.get("customerName"),
+                o.get("currency"),
+                o.get("totalAmount"),
+                o.get("createdAt"),
+                itemCount));
+        Predicate where = spec == null ? null : spec.toPredicate(o, cq, cb);
+        if (where != null) cq.where(where);
+        cq.orderBy(cb.desc(o.get("createdAt")), cb.desc(o.get("id")));
+
+        return em.createQuery(cq).setHint(HibernateHints.HINT_READ_ONLY, true);
+    }
+}
@@ -0,0 +1,78 @@
+package com.company.ordertracking.repo;
+
+import com.company.ordertracking.entity.SalesOrder;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Specifications for the order list / exports.
+ * Rows are ordered newest first by (createdAt, id); the cursor is the last (createdAt, id) already returned.
+ */
+public final class SalesOrderSpecs {
+
+    public static final Sort NEWEST_FIRST =
+            Sort.by(Sort.Direction.DESC, "createdAt").and(Sort.by(Sort.Direction.DESC, "id"));
+
+    private SalesOrderSpecs() {}
+
+    public static Specification<SalesOrder> matching(SalesOrderFilter f) {
+        Specification<SalesOrder> spec = Specification.where(null);
+        if (f == null) return spec;
+        if (f.status() != null) {
+            spec = spec.and((root, query, cb) -> cb.equal(root.get("status"), f.status()));
+        }
+        if (f.createdFrom() != null) {
+            spec = spec.and((root, query, cb) -> cb.greaterThanOrEqualTo(root.get("createdAt"), f.createdFrom()));
+        }
+        if (f.createdTo() != null) {
+            spec = spec.and((root, query, cb) -> cb.lessThanOrEqualTo(root.get("createdAt"), f.createdTo()));
+        }
+        if (f.customerName() != null && !f.customerName().isBlank()) {
+            String prefix = escapeLike(f.customerName().trim()) + "%";
+            spec = spec.and((root, query, cb) -> cb.like(root.get("customerName"), prefix, '\\'));
+        }
+        if (f.orderNo() != null && !f.orderNo().isBlank()) {
+            String prefix = escapeLike(f.orderNo().trim()) + "%";
+            spec = spec.and((root, query, cb) -> cb.like(root.get("orderNo"), prefix, '\\'));
+        }
+        return spec;
+    }
+
+    /**
+     * Search box of the order list: order number prefix, the id when {@code q} is a number, and the customer name
+     * prefix when {@code includeCustomer} (only for roles that may see customer names).
+     */
+    public static Specification<SalesOrder> search(String q, boolean includeCustomer) {
+        if (q == null || q.isBlank()) return Specification.where(null);
+        String term = q.trim();
+        String prefix = escapeLike(term) + "%";
+        Long id = term.chars().allMatch(Character::isDigit) && term.length() <= 18 ? Long.valueOf(term) : null;
+        return (root, query, cb) -> {
+            List<Predicate> any = new ArrayList<>();
+            any.add(cb.like(root.get("orderNo"), prefix, '\\'));
+            if (includeCustomer) any.add(cb.like(root.get("customerName"), prefix, '\\'));
+            if (id != null) any.add(cb.equal(root.get("id"), id));
+            return cb.or(any.toArray(new Predicate[0]));
+        };
+    }
+
+    /**
+     * Keyset seek: rows strictly after (createdAt, id) in NEWEST_FIRST order.
+     */
+    public static Specification<SalesOrder> after(LocalDateTime createdAt, Long id) {
+        if (createdAt == null || id == null) return Specification.where(null);
+        return (root, query, cb) -> cb.or(
+                cb.lessThan(root.get("createdAt"), createdAt),
+                cb.and(cb.equal(root.get("createdAt"), createdAt), cb.lessThan(root.get("id"), id))
+        );
+    }
+
+    private static String escapeLike(String s) {
+        return s.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,24 @@
+package com.company.ordertracking.repo;
+
+import com.company.ordertracking.entity.OrderStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Flat, read-only row for order list screens (no entity hydration).
+ * Sensitive columns: customerName / currency / totalAmount.
+ */
+public record SalesOrderSummary(Long id,
+                                String orderNo,
+                                OrderStatus status,
+                                String customerName,
+                                String currency,
+                                BigDecimal totalAmount,
+                                LocalDateTime createdAt,
+                                Long itemCount) {
+
+    public SalesOrderSummary withoutSensitive() {
+        return new SalesOrderSummary(id, orderNo, status, null, null, null, createdAt, itemCount);
+    }
+}
@@ -3,8 +3,11 @@ package com.company.ordertracking.repo;
 import com.company.ordertracking.entity.WarehouseReceipt;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface WarehouseReceiptRepository extends JpaRepository<WarehouseReceipt, Long> {
     Optional<WarehouseReceipt> findByOrder_Id(Long orderId);
+    List<WarehouseReceipt> findByOrder_IdIn(Collection<Long> orderIds);
 }
@@ -0,0 +1,130 @@
+package com.company.ordertracking.warehouse;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Running received quantity per order item in order_items.received_qty (V24), so the warehouse receipt stats
+ * read the items instead of summing warehouse_receipt_log_item on every refresh.
+ * <p>
+ * {@link #add} runs inside the transaction that inserts the receipt log, so the counters commit or roll back
+ * together with the log rows. {@link #reconcile} compares every counter with the sum of the log once a day and
+ * corrects (and logs) any difference; the log stays the source of truth.
+ */
+@Component
+public class ReceiptCounters {
+
+    private static final Logger log = LoggerFactory.getLogger(ReceiptCounters.class);
+
+    public record ReconcileStats(int candidates, int fixed) {}
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private final TransactionTemplate txTemplate;
+    private final boolean reconcileEnabled;
+    private final AtomicBoolean reconciling = new AtomicBoolean();
+
+    public ReceiptCounters(PlatformTransactionManager txManager,
+                           @Value("${app.warehouse.received-qty.reconcile.enabled:true}") boolean reconcileEnabled) {
+        this.txTemplate = new TransactionTemplate(txManager);
+        this.reconcileEnabled = reconcileEnabled;
+    }
+
+    /**
+     * Adds the received quantities (order item id -> qty). Must run inside the transaction that persists the
+     * receipt log items.
+     */
+    public void add(Map<Long, Integer> qtyByItem) {
+        if (qtyByItem.isEmpty()) return;
+        // one UPDATE for the whole receipt; ids in ascending order so concurrent receipts lock rows in the same order
+        Map<Long, Integer> sorted = new TreeMap<>(qtyByItem);
+        StringBuilder sql = new StringBuilder("UPDATE order_items SET received_qty = received_qty + CASE id");
+        int p = 0;
+        for (int i = 0; i < sorted.size(); i++) {
+            sql.append(" WHEN ?").append(++p).append(" THEN ?").append(++p);
+        }
+        sql.append(" ELSE 0 END WHERE id IN (");
+        for (int i = 0; i < sorted.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?").append(++p);
+        }
+        sql.append(')');
+
+        Query q = em.createNativeQuery(sql.toString());
+        int i = 0;
+        for (Map.Entry<Long, Integer> e : sorted.entrySet()) {
+            q.setParameter(++i, e.getKey());
+            q.setParameter(++i, e.getValue());
+        }
+        for (Long id : sorted.keySet()) {
+            q.setParameter(++i, id);
+        }
+        q.executeUpdate();
+    }
+
+    /**
+     * Finds counters that disagree with warehouse_receipt_log_item, then re-checks each one under the order_items
+     * row lock (a receipt that was in flight has committed by then) and overwrites it with the log sum.
+     * Returns null when a reconciliation is already running.
+     */
+    @Scheduled(cron = "${app.warehouse.received-qty.reconcile.cron:0 45 4 * * *}")
+    public ReconcileStats reconcile() {
+        if (!reconcileEnabled || !reconciling.compareAndSet(false, true)) return null;
+        try {
+            @SuppressWarnings("unchecked")
+            List<Number> candidates = txTemplate.execute(tx -> (List<Number>) em.createNativeQuery(
+                            "SELECT oi.id FROM order_items oi "
+                                    + "LEFT JOIN (SELECT order_item_id, SUM(qty) AS s FROM warehouse_receipt_log_item "
+                                    + "GROUP BY order_item_id) r ON r.order_item_id = oi.id "
+                                    + "WHERE oi.received_qty <> COALESCE(r.s, 0)")
+                    .getResultList());
+            int fixed = 0;
+            for (Number candidate : candidates) {
+                long id = candidate.longValue();
+                Boolean changed = txTemplate.execute(tx -> {
+                    @SuppressWarnings("unchecked")
+                    List<Number> locked = em.createNativeQuery(
+                                    "SELECT received_qty FROM order_items WHERE id = ?1 FOR UPDATE")
+                            .setParameter(1, id)
+                            .getResultList();
+                    if (locked.isEmpty()) return false;
+                    int counter = locked.get(0).intValue();
+                    int actual = ((Number) em.createNativeQuery(
+                                    "SELECT COALESCE(SUM(qty), 0) FROM warehouse_receipt_log_item WHERE order_item_id = ?1")
+                            .setParameter(1, id)
+                            .getSingleResult()).intValue();
+                    if (counter == actual) return false;
+                    em.createNativeQuery("UPDATE order_items SET received_qty = ?2 WHERE id = ?1")
+                            .setParameter(1, id)
+                            .setParameter(2, actual)
+                            .executeUpdate();
+                    log.warn("received_qty drift on order item {}: counter {}, receipt log {}; corrected",
+                            id, counter, actual);
+                    return true;
+                });
+                if (Boolean.TRUE.equals(changed)) fixed++;
+            }
+            ReconcileStats stats = new ReconcileStats(candidates.size(), fixed);
+            log.info("Received quantity reconciliation: {}", stats);
+            return stats;
+        } catch (Exception e) {
+            log.warn("Received quantity reconciliation failed: {}", e.getMessage(), e);
+            return new ReconcileStats(0, 0);
+        } finally {
+            reconciling.set(false);
+        }
+    }
+}
@@ -1,19 +1,38 @@
 package com.company.ordertracking.web;
 
+import com.company.ordertracking.audit.AuditArchive;
 import com.company.ordertracking.audit.AuditLogService;
+import com.company.ordertracking.audit.AuditRollups;
+import com.company.ordertracking.audit.AuditWriter;
 import com.company.ordertracking.entity.AuditLog;
 import com.company.ordertracking.repo.AuditLogRepository;
+import com.company.ordertracking.repo.AuditLogTextRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Sort;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/audit-logs")
@@ -21,26 +40,30 @@ public class AuditLogController {
 
     private final AuditLogService service;
     private final AuditLogRepository repo;
+    private final AuditLogTextRepository textRepo;
+    private final AuditWriter writer;
+    private final AuditArchive archive;
+    private final AuditRollups rollups;
+    private final ObjectMapper objectMapper;
 
-    public AuditLogController(AuditLogService service, AuditLogRepository repo) {
+    public AuditLogController(AuditLogService service, AuditLogRepository repo, AuditLogTextRepository textRepo,
+                              AuditWriter writer, AuditArchive archive, AuditRollups rollups,
+                              ObjectMapper objectMapper) {
         this.service = service;
         this.repo = repo;
+        this.textRepo = textRepo;
+        this.writer = writer;
+        this.archive = archive;
+        this.rollups = rollups;
+        this.objectMapper = objectMapper;
     }
 
     private static Map<String, Object> toDto(AuditLog a) {
-        return Map.of(
-                "id", a.getId(),
-                "createdAt", a.getCreatedAt() == null ? null : a.getCreatedAt().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME),
-                "username", a.getUsername(),
-                "role", a.getRole(),
-                "action", a.getAction(),
-                "target", a.getTarget(),
-                "status", a.getStatus(),
-                "ip", a.getIp(),
-                "details", a.getDetails()
-        );
+        return AuditLogService.toRecord(a);
     }
 
+    static final int MAX_PAGE_SIZE = 200;
+
     @GetMapping
     public ResponseEntity<?> list(
             @RequestParam(value = "q", required = false) String q,
@@ -55,8 +78,8 @@ public class AuditLogController {
             @RequestParam(value = "size", defaultValue = "20") int size
     ) {
         int p = Math.max(0, page);
-        int s = Math.min(200, Math.max(1, size));
-        PageRequest pr = PageRequest.of(p, s, Sort.by(Sort.Direction.DESC, "createdAt").and(Sort.by(Sort.Direction.DESC, "id")));
+        int s = Math.min(MAX_PAGE_SIZE, Math.max(1, size));
+        PageRequest pr = PageRequest.of(p, s, AuditLogService.NEWEST_FIRST);
         Page<AuditLog> result = service.search(q, action, username, status, from, to, pr);
         List<Map<String, Object>> content = result.getContent().stream().map(AuditLogController::toDto).toList();
         return ResponseEntity.ok(Map.of(
@@ -68,12 +91,221 @@ public class AuditLogController {
         ));
     }
 
+    /**
+     * Cursor mode (?mode=cursor): keyset pagination on (createdAt, id) without a total count, so a deep page
+     * costs the same as the first one. Pass nextCursor back as ?cursor=... for the following rows.
+     */
+    @GetMapping(params = "mode=cursor")
+    public ResponseEntity<?> listByCursor(
+            @RequestParam(value = "q", required = false) String q,
+            @RequestParam(value = "action", required = false) String action,
+            @RequestParam(value = "username", required = false) String username,
+            @RequestParam(value = "status", required = false) String status,
+            @RequestParam(value = "from", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(value = "to", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "20") int size
+    ) {
+        int s = Math.min(MAX_PAGE_SIZE, Math.max(1, size));
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        // one extra row tells us whether there is a next page
+        List<AuditLog> rows = service.searchAfter(q, action, username, status, from, to,
+                after == null ? null : after.createdAt(), after == null ? null : after.id(), s + 1);
+        boolean hasMore = rows.size() > s;
+        if (hasMore) rows = rows.subList(0, s);
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("content", rows.stream().map(AuditLogController::toDto).toList());
+        body.put("size", s);
+        body.put("hasMore", hasMore);
+        body.put("nextCursor", hasMore ? new KeysetCursor(rows.get(s - 1).getCreatedAt(), rows.get(s - 1).getId()).encode() : null);
+        return ResponseEntity.ok(body);
+    }
+
+    /**
+     * Full dump of the matching rows (same filters as the list), one {@link AuditLogService#toRecord} JSON object
+     * per line, newest first. Rows are streamed from a DB cursor, so there is no page size cap and memory stays
+     * flat. gzip=true sends a .ndjson.gz file instead.
+     */
+    @GetMapping("/export.ndjson")
+    @Transactional(readOnly = true)
+    public void exportNdjson(
+            @RequestParam(value = "q", required = false) String q,
+            @RequestParam(value = "action", required = false) String action,
+            @RequestParam(value = "username", required = false) String username,
+            @RequestParam(value = "status", required = false) String status,
+            @RequestParam(value = "from", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(value = "to", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(value = "gzip", defaultValue = "false") boolean gzip,
+            HttpServletResponse response) throws IOException {
+        startExport(response, "application/x-ndjson", "ndjson", gzip);
+        try (Stream<AuditLog> rows = service.stream(q, action, username, status, from, to);
+             Writer out = exportWriter(response, gzip)) {
+            for (AuditLog a : (Iterable<AuditLog>) rows::iterator) {
+                out.write(objectMapper.writeValueAsString(toDto(a)));
+                out.write('\n');
+            }
+        }
+    }
+
+    /**
+     * CSV flavour of {@link #exportNdjson}: one column per {@link AuditLogService#toRecord} field.
+     */
+    @GetMapping("/export.csv")
+    @Transactional(readOnly = true)
+    public void exportCsv(
+            @RequestParam(value = "q", required = false) String q,
+            @RequestParam(value = "action", required = false) String action,
+            @RequestParam(value = "username", required = false) String username,
+            @RequestParam(value = "status", required = false) String status,
+            @RequestParam(value = "from", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(value = "to", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(value = "gzip", defaultValue = "false") boolean gzip,
+            HttpServletResponse response) throws IOException {
+        startExport(response, "text/csv", "csv", gzip);
+        CSVFormat format = CSVFormat.DEFAULT.builder().setHeader(CSV_HEADERS).build();
+        try (Stream<AuditLog> rows = service.stream(q, action, username, status, from, to);
+             CSVPrinter csv = new CSVPrinter(exportWriter(response, gzip), format)) {
+            for (AuditLog a : (Iterable<AuditLog>) rows::iterator) {
+                csv.printRecord(toDto(a).values());
+            }
+        }
+    }
+
+    private static final String[] CSV_HEADERS =
+            {"id", "createdAt", "username", "role", "action", "target", "status", "ip", "details"};
+
+    private static void startExport(HttpServletResponse response, String contentType, String ext, boolean gzip) {
+        response.setContentType(gzip ? "application/gzip" : contentType + ";charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename("audit-logs_" + LocalDate.now() + "." + ext + (gzip ? ".gz" : ""))
+                .build()
+                .toString());
+    }
+
+    private static Writer exportWriter(HttpServletResponse response, boolean gzip) throws IOException {
+        OutputStream out = response.getOutputStream();
+        if (gzip) out = new GZIPOutputStream(out, 64 * 1024);
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Months whose partitions were dropped by retention and are now only in the NDJSON archive, newest first.
+     */
+    @GetMapping("/archive")
+    public List<String> archivedMonths() throws IOException {
+        return archive.months().stream().map(YearMonth::toString).toList();
+    }
+
+    /**
+     * Reads one archived month (e.g. /archive/2025-01) with the same filters and cursor paging as ?mode=cursor.
+     * Archives are scanned, not indexed, so this is slower than the live table.
+     */
+    @GetMapping("/archive/{month}")
+    public ResponseEntity<?> listArchived(
+            @PathVariable("month") String month,
+            @RequestParam(value = "q", required = false) String q,
+            @RequestParam(value = "action", required = false) String action,
+            @RequestParam(value = "username", required = false) String username,
+            @RequestParam(value = "status", required = false) String status,
+            @RequestParam(value = "from", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(value = "to", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "20") int size
+    ) throws IOException {
+        YearMonth ym;
+        try {
+            ym = YearMonth.parse(month);
+        } catch (DateTimeParseException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", "month must look like 2025-01"));
+        }
+        if (!archive.exists(ym)) {
+            return ResponseEntity.status(404).body(Map.of("message", "NOT_FOUND"));
+        }
+        int s = Math.min(MAX_PAGE_SIZE, Math.max(1, size));
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        List<Map<String, Object>> rows = archive.read(ym, new AuditArchive.Filter(q, action, username, status, from, to),
+                after == null ? null : after.createdAt(), after == null ? null : after.id(), s + 1);
+        boolean hasMore = rows.size() > s;
+        if (hasMore) rows = rows.subList(0, s);
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("content", rows);
+        body.put("size", s);
+        body.put("hasMore", hasMore);
+        body.put("nextCursor", hasMore ? cursorOf(rows.get(s - 1)) : null);
+        return ResponseEntity.ok(body);
+    }
+
+    private static String cursorOf(Map<String, Object> row) {
+        return new KeysetCursor(LocalDateTime.parse(row.get("createdAt").toString()),
+                ((Number) row.get("id")).longValue()).encode();
+    }
+
+    /**
+     * Activity counts from the hourly rollups (any range, answered without touching audit_logs).
+     * groupBy: hour | day | action | username | status. Range bounds are rounded down to the hour; to is exclusive.
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<?> stats(
+            @RequestParam(value = "groupBy", defaultValue = "day") String groupBy,
+            @RequestParam(value = "from", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(value = "to", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(value = "action", required = false) String action,
+            @RequestParam(value = "username", required = false) String username,
+            @RequestParam(value = "status", required = false) String status
+    ) {
+        AuditRollups.GroupBy g;
+        try {
+            g = AuditRollups.GroupBy.valueOf(groupBy.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", "groupBy must be one of hour, day, action, username, status"));
+        }
+        List<AuditRollups.Bucket> buckets = rollups.stats(g, from, to,
+                blankToNull(action, true), blankToNull(username, false), blankToNull(status, true));
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("groupBy", g.name().toLowerCase(Locale.ROOT));
+        body.put("from", from);
+        body.put("to", to);
+        body.put("total", buckets.stream().mapToLong(AuditRollups.Bucket::count).sum());
+        body.put("buckets", buckets);
+        return ResponseEntity.ok(body);
+    }
+
+    private static String blankToNull(String s, boolean upper) {
+        if (s == null || s.isBlank()) return null;
+        return upper ? s.trim().toUpperCase(Locale.ROOT) : s.trim();
+    }
+
+    /**
+     * Async audit writer health: queue depth and written / dropped / failed counters since startup.
+     */
+    @GetMapping("/writer")
+    public AuditWriter.Stats writerStats() {
+        return writer.stats();
+    }
+
+    /**
+     * Deletes the row, its search text and its rollup count in one transaction.
+     */
     @DeleteMapping("/{id}")
+    @Transactional
     public ResponseEntity<?> delete(@PathVariable Long id) {
-        if (!repo.existsById(id)) {
+        Optional<AuditLog> existing = repo.findById(id);
+        if (existing.isEmpty()) {
             return ResponseEntity.status(404).body(Map.of("message", "NOT_FOUND"));
         }
         repo.deleteById(id);
+        textRepo.deleteById(id);
+        rollups.remove(existing.get());
         return ResponseEntity.ok(Map.of("message", "OK"));
     }
 }
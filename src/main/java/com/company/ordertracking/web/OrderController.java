@@ -3,8 +3,16 @@ package com.company.ordertracking.web;
 import com.company.ordertracking.entity.*;
 import com.company.ordertracking.repo.*;
 import com.company.ordertracking.audit.AuditLogService;
+import com.company.ordertracking.photos.PhotoStore;
+import com.company.ordertracking.progress.ProcessProgress;
+import com.company.ordertracking.warehouse.ReceiptCounters;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import org.hibernate.Hibernate;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
@@ -12,42 +20,60 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/orders")
 public class OrderController {
 
+    static final int DEFAULT_PAGE_SIZE = 50;
+    static final int MAX_PAGE_SIZE = 200;
+    /** Order ids per IN (...) query of the batch loaders; the unpaged list can hold every order. */
+    static final int ID_CHUNK_SIZE = 1000;
+
     private final SalesOrderRepository orderRepo;
+    private final OrderItemRepository itemRepo;
     private final ProductionPlanRepository planRepo;
     private final MaterialAssessmentRepository materialRepo;
     private final OrderProcessRepository processRepo;
     private final WarehouseReceiptRepository receiptRepo;
     private final WarehouseReceiptLogRepository receiptLogRepo;
-    private final WarehouseReceiptLogItemRepository receiptLogItemRepo;
+    private final ReceiptCounters receiptCounters;
     private final ShipmentRepository shipmentRepo;
     private final AuditLogService auditLogService;
+    private final PhotoStore photoStore;
+    private final ProcessProgress progress;
+
+    @PersistenceContext
+    private EntityManager em;
 
     public OrderController(
             SalesOrderRepository orderRepo,
+            OrderItemRepository itemRepo,
             ProductionPlanRepository planRepo,
             MaterialAssessmentRepository materialRepo,
             OrderProcessRepository processRepo,
             WarehouseReceiptRepository receiptRepo,
             WarehouseReceiptLogRepository receiptLogRepo,
-            WarehouseReceiptLogItemRepository receiptLogItemRepo,
+            ReceiptCounters receiptCounters,
             ShipmentRepository shipmentRepo,
-            AuditLogService auditLogService
+            AuditLogService auditLogService,
+            PhotoStore photoStore,
+            ProcessProgress progress
     ) {
         this.orderRepo = orderRepo;
+        this.itemRepo = itemRepo;
         this.planRepo = planRepo;
         this.materialRepo = materialRepo;
         this.processRepo = processRepo;
         this.receiptRepo = receiptRepo;
         this.receiptLogRepo = receiptLogRepo;
-        this.receiptLogItemRepo = receiptLogItemRepo;
+        this.receiptCounters = receiptCounters;
         this.shipmentRepo = shipmentRepo;
         this.auditLogService = auditLogService;
+        this.photoStore = photoStore;
+        this.progress = progress;
     }
 
     private Role roleOf(String xRole) {
@@ -58,14 +84,61 @@ public class OrderController {
         if (!ok) throw new ResponseStatusException(status, msg);
     }
 
+    /**
+     * Keyset-paginated order list (newest first). Filters are evaluated in SQL and rows are
+     * read as flat projections (no entity hydration); sensitive columns are masked by role.
+     * {@code q} is the list's search box (see {@link SalesOrderSpecs#search}).
+     */
     @GetMapping
-    @Transactional
-    public List<OrderResponse> list(@RequestHeader(value = "X-ROLE", required = false) String xRole) {
+    @Transactional(readOnly = true)
+    public OrderPage list(@RequestParam(value = "status", required = false) OrderStatus status,
+                          @RequestParam(value = "createdFrom", required = false)
+                          @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdFrom,
+                          @RequestParam(value = "createdTo", required = false)
+                          @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdTo,
+                          @RequestParam(value = "customerName", required = false) String customerName,
+                          @RequestParam(value = "orderNo", required = false) String orderNo,
+                          @RequestParam(value = "q", required = false) String q,
+                          @RequestParam(value = "cursor", required = false) String cursor,
+                          @RequestParam(value = "limit", defaultValue = "" + DEFAULT_PAGE_SIZE) int limit,
+                          @RequestHeader(value = "X-ROLE", required = false) String xRole) {
         Role role = roleOf(xRole);
-        return orderRepo.findAll().stream()
+        int size = Math.min(MAX_PAGE_SIZE, Math.max(1, limit));
+        SalesOrderFilter filter = new SalesOrderFilter(status, createdFrom, createdTo, customerName, orderNo);
+        KeysetCursor after = KeysetCursor.decode(cursor);
+
+        Specification<SalesOrder> spec = SalesOrderSpecs.matching(filter)
+                .and(SalesOrderSpecs.search(q, role.canSeeSensitive()));
+        if (after != null) spec = spec.and(SalesOrderSpecs.after(after.createdAt(), after.id()));
+
+        // fetch one extra row to know whether another page exists (no count query)
+        List<SalesOrderSummary> rows = orderRepo.findSummaries(spec, size + 1);
+        boolean hasMore = rows.size() > size;
+        if (hasMore) rows = rows.subList(0, size);
+
+        OrderPage page = new OrderPage();
+        page.content = rows.stream()
+                .map(r -> role.canSeeSensitive() ? r : r.withoutSensitive())
+                .collect(Collectors.toList());
+        page.hasMore = hasMore;
+        if (hasMore) {
+            SalesOrderSummary last = rows.get(rows.size() - 1);
+            page.nextCursor = new KeysetCursor(last.createdAt(), last.id()).encode();
+        }
+        return page;
+    }
+
+    /**
+     * Legacy unpaged list (every order, sorted by id). Only served with an explicit ?all=true.
+     */
+    @GetMapping(params = "all=true")
+    @Transactional(readOnly = true)
+    public List<OrderResponse> listAll(@RequestHeader(value = "X-ROLE", required = false) String xRole) {
+        Role role = roleOf(xRole);
+        List<SalesOrder> orders = orderRepo.findAll().stream()
                 .sorted(Comparator.comparing(SalesOrder::getId))
-                .map(o -> toResponse(o, role, false))
                 .collect(Collectors.toList());
+        return toResponses(orders, role, false);
     }
 
     @GetMapping("/{id}")
@@ -153,14 +226,7 @@ public class OrderController {
         SalesOrder so = orderRepo.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "order not found"));
 
-        Map<Long, Integer> receivedMap = new HashMap<>();
-        for (Object[] row : receiptLogItemRepo.sumQtyByOrderItemId(so.getId())) {
-            if (row == null || row.length < 2) continue;
-            Long itemId = (Long) row[0];
-            Number sum = (Number) row[1];
-            receivedMap.put(itemId, sum == null ? 0 : sum.intValue());
-        }
-
+        // received_qty is kept up to date by createReceiptLog (ReceiptCounters), no need to sum the log here
         List<OrderResponse.WarehouseReceiptStat> out = new ArrayList<>();
         for (OrderItem it : so.getItems()) {
             OrderResponse.WarehouseReceiptStat s = new OrderResponse.WarehouseReceiptStat();
@@ -168,7 +234,7 @@ public class OrderController {
             s.productName = it.getProductName();
             s.spec = it.getSpec();
             s.demandQty = it.getQuantity() == null ? 0 : it.getQuantity();
-            s.receivedQty = receivedMap.getOrDefault(it.getId(), 0);
+            s.receivedQty = it.getReceivedQty() == null ? 0 : it.getReceivedQty();
             s.remainingQty = Math.max(0, (s.demandQty == null ? 0 : s.demandQty) - (s.receivedQty == null ? 0 : s.receivedQty));
             out.add(s);
         }
@@ -211,6 +277,7 @@ public class OrderController {
         log.setNote(req.note);
 
         List<WarehouseReceiptLogItem> items = new ArrayList<>();
+        Map<Long, Integer> receivedByItem = new HashMap<>();
         for (WarehouseReceiptLogRequest.Item it : req.items) {
             if (it == null) continue;
             OrderItem oi = itemMap.get(it.orderItemId);
@@ -222,11 +289,13 @@ public class OrderController {
             li.setOrderItem(oi);
             li.setQty(qty);
             items.add(li);
+            receivedByItem.merge(oi.getId(), qty, Integer::sum);
         }
         require(!items.isEmpty(), HttpStatus.BAD_REQUEST, "no valid items");
         log.setItems(items);
 
         WarehouseReceiptLog saved = receiptLogRepo.save(log);
+        receiptCounters.add(receivedByItem);
         auditLogService.log(httpReq, "WAREHOUSE_RECEIPT_LOG", so.getOrderNo(), AuditLogService.Status.SUCCESS,
                 "orderId=" + so.getId() + ", logId=" + saved.getId());
         return toReceiptLogDto(saved);
@@ -241,6 +310,8 @@ public class OrderController {
         require(role.canDeleteOrder(), HttpStatus.FORBIDDEN, "role not allowed");
         SalesOrder so = orderRepo.findById(id).orElse(null);
         if (so == null) throw new ResponseStatusException(HttpStatus.NOT_FOUND, "order not found");
+        // order_photo rows cascade in the database; give back their blob references first
+        photoStore.releaseOrder(id);
         orderRepo.deleteById(id);
         auditLogService.log(httpReq, "DELETE_ORDER", so.getOrderNo(), AuditLogService.Status.SUCCESS,
                 "orderId=" + id);
@@ -298,36 +369,104 @@ public class OrderController {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Saves the whole BOM list. Rows are merged by id (see {@link #mergeMaterialRows}); the full list is returned.
+     */
     @PutMapping("/{id}/materials")
     @Transactional
     public List<OrderResponse.Material> replaceMaterials(@PathVariable Long id,
                                                          @Valid @RequestBody MaterialsRequest req,
                                                          @RequestHeader(value = "X-ROLE", required = false) String xRole) {
+        SalesOrder so = materialListOrder(id, xRole);
+        mergeMaterialRows(so, req.materials);
+        return materialRepo.findByOrder_IdOrderByIdAsc(so.getId()).stream()
+                .map(this::toMaterialDto)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Same merge as PUT, but answers with only what changed so the list can be patched in place.
+     */
+    @PatchMapping("/{id}/materials")
+    @Transactional
+    public OrderResponse.Changes<OrderResponse.Material> mergeMaterials(@PathVariable Long id,
+                                                                        @Valid @RequestBody MaterialsRequest req,
+                                                                        @RequestHeader(value = "X-ROLE", required = false) String xRole) {
+        return mergeMaterialRows(materialListOrder(id, xRole), req.materials);
+    }
+
+    private SalesOrder materialListOrder(Long id, String xRole) {
         Role role = roleOf(xRole);
         require(role.canManageProductionPlan(), HttpStatus.FORBIDDEN, "role not allowed");
-
-        SalesOrder so = orderRepo.findById(id)
+        return orderRepo.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "order not found"));
+    }
 
-        materialRepo.deleteByOrder_Id(so.getId());
-        if (req.materials != null) {
-            for (MaterialsRequest.Material m : req.materials) {
+    /**
+     * Same merge as {@link #mergeProcessRows}: rows with an id are updated only when a field differs (untouched rows
+     * keep their created_at / updated_at), new rows are inserted as a JDBC batch, missing ones are deleted with a
+     * single statement, and changed / new rows are re-read in one query.
+     */
+    private OrderResponse.Changes<OrderResponse.Material> mergeMaterialRows(SalesOrder so, List<MaterialsRequest.Material> incoming) {
+        Map<Long, MaterialAssessment> existing = new LinkedHashMap<>();
+        for (MaterialAssessment ma : materialRepo.findByOrder_IdOrderByIdAsc(so.getId())) existing.put(ma.getId(), ma);
+
+        OrderResponse.Changes<OrderResponse.Material> changes = new OrderResponse.Changes<>();
+        List<MaterialAssessment> created = new ArrayList<>();
+        List<MaterialAssessment> updated = new ArrayList<>();
+        Set<Long> kept = new HashSet<>();
+        for (MaterialsRequest.Material m : incoming == null ? List.<MaterialsRequest.Material>of() : incoming) {
+            if (m.id == null) {
                 MaterialAssessment ma = new MaterialAssessment();
                 ma.setOrder(so);
-                ma.setMaterialName(m.materialName);
-                ma.setProcurementType(m.procurementType);
-                ma.setNote(m.note);
-                materialRepo.save(ma);
+                applyMaterial(ma, m);
+                created.add(ma);
+                continue;
             }
+            MaterialAssessment ma = existing.get(m.id);
+            require(ma != null, HttpStatus.BAD_REQUEST, "material " + m.id + " does not belong to this order");
+            require(kept.add(m.id), HttpStatus.BAD_REQUEST, "material " + m.id + " is listed twice");
+            if (applyMaterial(ma, m)) updated.add(ma);
+            else changes.unchanged++;
+        }
+
+        for (Long mid : existing.keySet()) {
+            if (!kept.contains(mid)) changes.deleted.add(mid);
+        }
+        if (!changes.deleted.isEmpty()) {
+            materialRepo.deleteAllByIdInBatch(changes.deleted);
+            changes.deleted.forEach(mid -> em.detach(existing.get(mid)));
         }
+        materialRepo.saveAll(created);
 
         if (so.getStatus() == OrderStatus.DRAFT) {
             so.setStatus(OrderStatus.IN_PRODUCTION);
-            }
+        }
 
-        return materialRepo.findByOrder_IdOrderByIdAsc(so.getId()).stream()
-                .map(this::toMaterialDto)
-                .collect(Collectors.toList());
+        if (!created.isEmpty() || !updated.isEmpty()) {
+            em.flush();
+            List<Long> ids = new ArrayList<>();
+            for (MaterialAssessment ma : created) { ids.add(ma.getId()); em.detach(ma); }
+            for (MaterialAssessment ma : updated) { ids.add(ma.getId()); em.detach(ma); }
+            Map<Long, MaterialAssessment> fresh = materialRepo.findAllById(ids).stream()
+                    .collect(Collectors.toMap(MaterialAssessment::getId, ma -> ma));
+            created.forEach(ma -> changes.created.add(toMaterialDto(fresh.get(ma.getId()))));
+            updated.forEach(ma -> changes.updated.add(toMaterialDto(fresh.get(ma.getId()))));
+        }
+        return changes;
+    }
+
+    /** Copies the request row onto the entity; returns whether anything differed. */
+    private static boolean applyMaterial(MaterialAssessment ma, MaterialsRequest.Material m) {
+        boolean changed = !Objects.equals(ma.getMaterialName(), m.materialName)
+                || !Objects.equals(ma.getProcurementType(), m.procurementType)
+                || !Objects.equals(ma.getNote(), m.note);
+        if (changed) {
+            ma.setMaterialName(m.materialName);
+            ma.setProcurementType(m.procurementType);
+            ma.setNote(m.note);
+        }
+        return changed;
     }
 
     // ===== Workflow: processes (production) =====
@@ -342,37 +481,159 @@ public class OrderController {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Saves the whole process grid. Rows are merged by id (see {@link #mergeProcessRows}); the full list is returned.
+     */
     @PutMapping("/{id}/processes")
     @Transactional
     public List<OrderResponse.Process> replaceProcesses(@PathVariable Long id,
                                                         @Valid @RequestBody ProcessesRequest req,
                                                         @RequestHeader(value = "X-ROLE", required = false) String xRole) {
+        SalesOrder so = processGridOrder(id, xRole);
+        OrderResponse.Changes<OrderResponse.Process> changes = mergeProcessRows(so, req.processes);
+        Map<Long, OrderResponse.Process> updated = changes.updated.stream()
+                .collect(Collectors.toMap(p -> p.id, p -> p));
+        return processRepo.findByOrder_IdOrderByIdAsc(so.getId()).stream()
+                .map(op -> updated.getOrDefault(op.getId(), toProcessDto(op)))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Same merge as PUT, but answers with only what changed so the grid can be patched in place.
+     */
+    @PatchMapping("/{id}/processes")
+    @Transactional
+    public OrderResponse.Changes<OrderResponse.Process> mergeProcesses(@PathVariable Long id,
+                                                                       @Valid @RequestBody ProcessesRequest req,
+                                                                       @RequestHeader(value = "X-ROLE", required = false) String xRole) {
+        return mergeProcessRows(processGridOrder(id, xRole), req.processes);
+    }
+
+    private SalesOrder processGridOrder(Long id, String xRole) {
         Role role = roleOf(xRole);
         require(role.canUpdateProcessProgress() || role.canManageProductionPlan(), HttpStatus.FORBIDDEN, "role not allowed");
-
-        SalesOrder so = orderRepo.findById(id)
+        return orderRepo.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "order not found"));
+    }
 
-        processRepo.deleteByOrder_Id(so.getId());
-        if (req.processes != null) {
-            for (ProcessesRequest.Process p : req.processes) {
+    /**
+     * Rows with an id update that process (only when a field differs, so untouched rows keep their updated_at),
+     * rows without one are inserted as a JDBC batch, and processes missing from the list are deleted with a single
+     * statement. Changed and new rows are re-read in one query for their database-maintained timestamps.
+     * <p>
+     * A finished quantity only counts as edited when it differs from {@code expectedFinishedQuantity}, the value the
+     * grid displayed; the difference goes through {@link ProcessProgress#adjustInTransaction}, so terminal increments
+     * accepted since the grid was loaded are kept. Without an expected value the quantity replaces
+     * the current total ({@link ProcessProgress#finishedQuantity}).
+     */
+    private OrderResponse.Changes<OrderResponse.Process> mergeProcessRows(SalesOrder so, List<ProcessesRequest.Process> incoming) {
+        Map<Long, OrderProcess> existing = new LinkedHashMap<>();
+        for (OrderProcess op : processRepo.findByOrder_IdOrderByIdAsc(so.getId())) existing.put(op.getId(), op);
+
+        OrderResponse.Changes<OrderResponse.Process> changes = new OrderResponse.Changes<>();
+        List<OrderProcess> created = new ArrayList<>();
+        List<OrderProcess> updated = new ArrayList<>();
+        Map<Long, Integer> finishedSet = new LinkedHashMap<>();
+        Map<Long, Long> adjustments = new LinkedHashMap<>();
+        Set<Long> kept = new HashSet<>();
+        for (ProcessesRequest.Process p : incoming == null ? List.<ProcessesRequest.Process>of() : incoming) {
+            int finished = p.finishedQuantity == null ? 0 : Math.max(0, p.finishedQuantity);
+            if (p.id == null) {
                 OrderProcess op = new OrderProcess();
                 op.setOrder(so);
-                op.setProcessName(p.processName);
-                op.setTargetQuantity(p.targetQuantity);
-                op.setFinishedQuantity(p.finishedQuantity == null ? 0 : Math.max(0, p.finishedQuantity));
-                op.setNote(p.note);
-                processRepo.save(op);
+                applyProcess(op, p);
+                op.setFinishedQuantity(finished);
+                created.add(op);
+                continue;
+            }
+            OrderProcess op = existing.get(p.id);
+            require(op != null, HttpStatus.BAD_REQUEST, "process " + p.id + " does not belong to this order");
+            require(kept.add(p.id), HttpStatus.BAD_REQUEST, "process " + p.id + " is listed twice");
+            boolean changed = applyProcess(op, p);
+            long current = progress.finishedQuantity(op.getId(), op.getFinishedQuantity());
+            long delta = finished - (p.expectedFinishedQuantity == null ? current : Math.max(0, p.expectedFinishedQuantity));
+            if (delta != 0) {
+                adjustments.put(op.getId(), delta);
+                finishedSet.put(op.getId(), (int) Math.min(Integer.MAX_VALUE, Math.max(0, current + delta)));
+                changed = true;
             }
+            if (changed) updated.add(op);
+            else changes.unchanged++;
         }
 
+        // adjustments go through the instance that ingests increments; refuse before anything is written
+        require(adjustments.isEmpty() || progress.active(), HttpStatus.SERVICE_UNAVAILABLE,
+                "process progress is handled by another instance, please retry");
+
+        for (Long pid : existing.keySet()) {
+            if (!kept.contains(pid)) changes.deleted.add(pid);
+        }
+        if (!changes.deleted.isEmpty()) {
+            processRepo.deleteAllByIdInBatch(changes.deleted);
+            changes.deleted.forEach(pid -> em.detach(existing.get(pid)));
+        }
+        processRepo.saveAll(created);
+
         if (so.getStatus() == OrderStatus.DRAFT) {
             so.setStatus(OrderStatus.IN_PRODUCTION);
-            }
+        }
 
-        return processRepo.findByOrder_IdOrderByIdAsc(so.getId()).stream()
-                .map(this::toProcessDto)
-                .collect(Collectors.toList());
+        if (!created.isEmpty() || !updated.isEmpty()) {
+            em.flush();
+            List<Long> ids = new ArrayList<>();
+            for (OrderProcess op : created) { ids.add(op.getId()); em.detach(op); }
+            for (OrderProcess op : updated) { ids.add(op.getId()); em.detach(op); }
+            Map<Long, OrderProcess> fresh = processRepo.findAllById(ids).stream()
+                    .collect(Collectors.toMap(OrderProcess::getId, op -> op));
+            created.forEach(op -> changes.created.add(toProcessDto(fresh.get(op.getId()))));
+            updated.forEach(op -> {
+                OrderResponse.Process dto = toProcessDto(fresh.get(op.getId()));
+                // order_process catches up with the adjustment at the next flush
+                if (finishedSet.containsKey(op.getId())) dto.finishedQuantity = finishedSet.get(op.getId());
+                changes.updated.add(dto);
+            });
+        }
+        // journaled before commit: a lost lease or a journal failure rolls the whole save back
+        progress.adjustInTransaction(adjustments);
+        return changes;
+    }
+
+    /** Copies name, target and note onto the entity (the finished quantity is handled by the caller). */
+    private static boolean applyProcess(OrderProcess op, ProcessesRequest.Process p) {
+        boolean changed = !Objects.equals(op.getProcessName(), p.processName)
+                || !Objects.equals(op.getTargetQuantity(), p.targetQuantity)
+                || !Objects.equals(op.getNote(), p.note);
+        if (changed) {
+            op.setProcessName(p.processName);
+            op.setTargetQuantity(p.targetQuantity);
+            op.setNote(p.note);
+        }
+        return changed;
+    }
+
+    /**
+     * Finished-quantity increment from a shop-floor terminal, idempotent per (deviceId, seq). The increment is
+     * journaled and acknowledged right away and reaches order_process with the next batched flush; the answer carries
+     * the process's current total.
+     */
+    @PostMapping("/{id}/processes/{processId}/increment")
+    public ProcessProgress.Result incrementProcess(@PathVariable Long id,
+                                                   @PathVariable Long processId,
+                                                   @Valid @RequestBody ProcessIncrementRequest req,
+                                                   @RequestHeader(value = "X-ROLE", required = false) String xRole) {
+        Role role = roleOf(xRole);
+        require(role.canUpdateProcessProgress(), HttpStatus.FORBIDDEN, "role not allowed");
+        return progress.increment(id, processId, req.deviceId.trim(), req.seq, req.delta);
+    }
+
+    /**
+     * Increment ingestion counters: processes tracked in memory, increments not flushed yet, flush outcomes.
+     */
+    @GetMapping("/process-progress")
+    public ProcessProgress.Stats processProgressStats(@RequestHeader(value = "X-ROLE", required = false) String xRole) {
+        Role role = roleOf(xRole);
+        require(role.canUpdateProcessProgress(), HttpStatus.FORBIDDEN, "role not allowed");
+        return progress.stats();
     }
 
     // ===== Warehouse: receipt =====
@@ -391,7 +652,7 @@ public class OrderController {
         // all processes finished?
         List<OrderProcess> processes = processRepo.findByOrder_IdOrderByIdAsc(so.getId());
         boolean ok = !processes.isEmpty() && processes.stream().allMatch(p ->
-                p.getTargetQuantity() == null || (p.getFinishedQuantity() != null && p.getFinishedQuantity() >= p.getTargetQuantity()));
+                p.getTargetQuantity() == null || progress.finishedQuantity(p.getId(), p.getFinishedQuantity()) >= p.getTargetQuantity());
         require(ok, HttpStatus.BAD_REQUEST, "processes not finished yet");
 
         WarehouseReceipt receipt = receiptRepo.findByOrder_Id(so.getId()).orElse(new WarehouseReceipt());
@@ -487,6 +748,81 @@ public class OrderController {
     }
 
     private OrderResponse toResponse(SalesOrder so, Role role, boolean includeWorkflow) {
+        return toResponses(List.of(so), role, includeWorkflow).get(0);
+    }
+
+    /**
+     * Builds responses for a batch of orders with a fixed number of queries (no N+1):
+     * one IN (:ids) query for the items not yet loaded, plus one per workflow section,
+     * each split into chunks of {@link #ID_CHUNK_SIZE} ids.
+     */
+    List<OrderResponse> toResponses(List<SalesOrder> orders, Role role, boolean includeWorkflow) {
+        if (orders.isEmpty()) return new ArrayList<>();
+
+        // items: reuse collections already in memory (create/update), batch-load the rest
+        Map<Long, List<OrderItem>> itemsByOrder = new HashMap<>();
+        List<Long> unloaded = new ArrayList<>();
+        for (SalesOrder so : orders) {
+            if (Hibernate.isInitialized(so.getItems())) itemsByOrder.put(so.getId(), so.getItems());
+            else unloaded.add(so.getId());
+        }
+        if (!unloaded.isEmpty()) {
+            for (OrderItem it : loadByOrderIds(unloaded, itemRepo::findByOrder_IdInOrderByIdAsc)) {
+                itemsByOrder.computeIfAbsent(it.getOrder().getId(), k -> new ArrayList<>()).add(it);
+            }
+        }
+
+        Map<Long, ProductionPlan> plans = Map.of();
+        Map<Long, List<MaterialAssessment>> materials = Map.of();
+        Map<Long, List<OrderProcess>> processes = Map.of();
+        Map<Long, WarehouseReceipt> receipts = Map.of();
+        Map<Long, Shipment> shipments = Map.of();
+        if (includeWorkflow) {
+            List<Long> ids = orders.stream().map(SalesOrder::getId).collect(Collectors.toList());
+            plans = loadByOrderIds(ids, planRepo::findByOrder_IdIn).stream()
+                    .collect(Collectors.toMap(p -> p.getOrder().getId(), p -> p));
+            materials = loadByOrderIds(ids, materialRepo::findByOrder_IdInOrderByIdAsc).stream()
+                    .collect(Collectors.groupingBy(m -> m.getOrder().getId()));
+            processes = loadByOrderIds(ids, processRepo::findByOrder_IdInOrderByIdAsc).stream()
+                    .collect(Collectors.groupingBy(p -> p.getOrder().getId()));
+            receipts = loadByOrderIds(ids, receiptRepo::findByOrder_IdIn).stream()
+                    .collect(Collectors.toMap(wr -> wr.getOrder().getId(), wr -> wr));
+            shipments = loadByOrderIds(ids, shipmentRepo::findByOrder_IdIn).stream()
+                    .collect(Collectors.toMap(sh -> sh.getOrder().getId(), sh -> sh));
+        }
+
+        List<OrderResponse> out = new ArrayList<>(orders.size());
+        for (SalesOrder so : orders) {
+            OrderResponse r = toBasicResponse(so, itemsByOrder.getOrDefault(so.getId(), List.of()), role);
+            if (includeWorkflow) {
+                Long id = so.getId();
+                ProductionPlan plan = plans.get(id);
+                if (plan != null) r.plan = toPlanDto(plan);
+                r.materials = materials.getOrDefault(id, List.of()).stream()
+                        .map(this::toMaterialDto).collect(Collectors.toList());
+                r.processes = processes.getOrDefault(id, List.of()).stream()
+                        .map(this::toProcessDto).collect(Collectors.toList());
+                WarehouseReceipt wr = receipts.get(id);
+                if (wr != null) r.warehouseReceipt = toReceiptDto(wr);
+                Shipment sh = shipments.get(id);
+                if (sh != null) r.shipment = toShipmentDto(sh);
+            }
+            out.add(r);
+        }
+        return out;
+    }
+
+    /** Runs {@code loader} per chunk of at most {@link #ID_CHUNK_SIZE} ids; each order's rows stay in one chunk. */
+    private static <T> List<T> loadByOrderIds(List<Long> ids, Function<List<Long>, List<T>> loader) {
+        if (ids.size() <= ID_CHUNK_SIZE) return loader.apply(ids);
+        List<T> out = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += ID_CHUNK_SIZE) {
+            out.addAll(loader.apply(ids.subList(from, Math.min(ids.size(), from + ID_CHUNK_SIZE))));
+        }
+        return out;
+    }
+
+    private OrderResponse toBasicResponse(SalesOrder so, List<OrderItem> items, Role role) {
         OrderResponse r = new OrderResponse();
         r.id = so.getId();
         r.orderNo = so.getOrderNo();
@@ -501,7 +837,7 @@ public class OrderController {
         r.createdAt = so.getCreatedAt();
 
         r.items = new ArrayList<>();
-        for (OrderItem it : so.getItems()) {
+        for (OrderItem it : items) {
             OrderResponse.Item ii = new OrderResponse.Item();
             ii.id = it.getId();
             ii.productName = it.getProductName();
@@ -522,17 +858,6 @@ public class OrderController {
                 ii.unitPrice = null;
             }
         }
-
-        if (includeWorkflow) {
-            planRepo.findByOrder_Id(so.getId()).ifPresent(p -> r.plan = toPlanDto(p));
-            r.materials = materialRepo.findByOrder_IdOrderByIdAsc(so.getId()).stream()
-                    .map(this::toMaterialDto).collect(Collectors.toList());
-            r.processes = processRepo.findByOrder_IdOrderByIdAsc(so.getId()).stream()
-                    .map(this::toProcessDto).collect(Collectors.toList());
-            receiptRepo.findByOrder_Id(so.getId()).ifPresent(wr -> r.warehouseReceipt = toReceiptDto(wr));
-            shipmentRepo.findByOrder_Id(so.getId()).ifPresent(s -> r.shipment = toShipmentDto(s));
-        }
-
         return r;
     }
 
@@ -562,7 +887,8 @@ public class OrderController {
         dto.id = op.getId();
         dto.processName = op.getProcessName();
         dto.targetQuantity = op.getTargetQuantity();
-        dto.finishedQuantity = op.getFinishedQuantity();
+        // includes terminal increments not flushed yet; the column is an INT, so clamp rather than wrap
+        dto.finishedQuantity = (int) Math.min(Integer.MAX_VALUE, progress.finishedQuantity(op.getId(), op.getFinishedQuantity()));
         dto.note = op.getNote();
         dto.updatedAt = op.getUpdatedAt();
         return dto;
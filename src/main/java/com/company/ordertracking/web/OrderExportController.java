@@ -0,0 +1,204 @@
+package com.company.ordertracking.web;
+
+import com.company.ordertracking.entity.OrderStatus;
+import com.company.ordertracking.entity.Role;
+import com.company.ordertracking.repo.SalesOrderFilter;
+import com.company.ordertracking.repo.SalesOrderItemRow;
+import com.company.ordertracking.repo.SalesOrderRepository;
+import com.company.ordertracking.repo.SalesOrderSpecs;
+import com.company.ordertracking.repo.SalesOrderSummary;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Server-side order exports. Rows are streamed from a DB cursor straight into the response,
+ * so memory stays flat regardless of the number of orders.
+ */
+@RestController
+@RequestMapping("/api/orders")
+public class OrderExportController {
+
+    private static final String MASK = "***";
+
+    /**
+     * Rows kept in memory by SXSSF; older rows are flushed to a (compressed) temp file.
+     */
+    static final int XLSX_ROW_WINDOW = 100;
+
+    /**
+     * Excel's row limit per sheet (1,048,576); larger exports continue on another sheet.
+     */
+    static final int XLSX_MAX_ROWS_PER_SHEET = SpreadsheetVersion.EXCEL2007.getMaxRows();
+
+    private static final String[] XLSX_HEADERS = {
+            "Order ID", "Order No.", "Status", "Customer", "Contact", "Currency", "Payment Terms", "Total Amount",
+            "Product Requirements", "Packaging Requirements", "Created At",
+            "Product Name", "Spec", "Quantity", "Unit Price", "Notes"
+    };
+
+    private final SalesOrderRepository orderRepo;
+
+    public OrderExportController(SalesOrderRepository orderRepo) {
+        this.orderRepo = orderRepo;
+    }
+
+    @GetMapping("/export.csv")
+    @Transactional(readOnly = true)
+    public void exportCsv(@RequestParam(value = "status", required = false) OrderStatus status,
+                          @RequestParam(value = "createdFrom", required = false)
+                          @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdFrom,
+                          @RequestParam(value = "createdTo", required = false)
+                          @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdTo,
+                          @RequestParam(value = "customerName", required = false) String customerName,
+                          @RequestParam(value = "orderNo", required = false) String orderNo,
+                          @RequestHeader(value = "X-ROLE", required = false) String xRole,
+                          HttpServletResponse response) throws IOException {
+        Role role = Role.fromHeader(xRole);
+        boolean showSensitive = role.canSeeSensitive();
+        SalesOrderFilter filter = new SalesOrderFilter(status, createdFrom, createdTo, customerName, orderNo);
+
+        response.setContentType("text/csv;charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, attachment("csv"));
+
+        CSVFormat format = CSVFormat.DEFAULT.builder()
+                .setHeader("ID", "Order No.", "Status", "Customer", "Currency", "Total Amount", "Created At", "Items")
+                .build();
+        try (Stream<SalesOrderSummary> rows = orderRepo.streamSummaries(SalesOrderSpecs.matching(filter));
+             CSVPrinter csv = new CSVPrinter(new BufferedWriter(
+                     new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8)), format)) {
+            for (SalesOrderSummary o : (Iterable<SalesOrderSummary>) rows::iterator) {
+                csv.printRecord(
+                        o.id(),
+                        o.orderNo(),
+                        o.status(),
+                        showSensitive ? o.customerName() : MASK,
+                        showSensitive ? o.currency() : MASK,
+                        showSensitive ? o.totalAmount() : MASK,
+                        o.createdAt(),
+                        o.itemCount()
+                );
+            }
+        }
+    }
+
+    @GetMapping("/export.xlsx")
+    @Transactional(readOnly = true)
+    public void exportXlsx(@RequestParam(value = "status", required = false) OrderStatus status,
+                           @RequestParam(value = "createdFrom", required = false)
+                           @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdFrom,
+                           @RequestParam(value = "createdTo", required = false)
+                           @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdTo,
+                           @RequestParam(value = "customerName", required = false) String customerName,
+                           @RequestParam(value = "orderNo", required = false) String orderNo,
+                           @RequestHeader(value = "X-ROLE", required = false) String xRole,
+                           HttpServletResponse response) throws IOException {
+        Role role = Role.fromHeader(xRole);
+        boolean showSensitive = role.canSeeSensitive();
+        SalesOrderFilter filter = new SalesOrderFilter(status, createdFrom, createdTo, customerName, orderNo);
+
+        response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, attachment("xlsx"));
+
+        SXSSFWorkbook wb = new SXSSFWorkbook(XLSX_ROW_WINDOW);
+        wb.setCompressTempFiles(true);
+        try (Stream<SalesOrderItemRow> rows = orderRepo.streamItemRows(SalesOrderSpecs.matching(filter))) {
+            writeItemRows(wb, rows.iterator(), showSensitive, XLSX_MAX_ROWS_PER_SHEET);
+            wb.write(response.getOutputStream());
+        } finally {
+            wb.dispose(); // delete the temp files
+            wb.close();
+        }
+    }
+
+    /**
+     * Writes one row per item. When a sheet reaches {@code maxRowsPerSheet} rows (header included) the export
+     * continues on a new sheet ("Orders (2)", ...) with its own header row.
+     */
+    static void writeItemRows(Workbook wb, Iterator<SalesOrderItemRow> rows, boolean showSensitive,
+                              int maxRowsPerSheet) {
+        CellStyle dateStyle = wb.createCellStyle();
+        dateStyle.setDataFormat(wb.getCreationHelper().createDataFormat().getFormat("yyyy-mm-dd hh:mm:ss"));
+
+        Sheet sheet = newItemSheet(wb);
+        int r = 1;
+        while (rows.hasNext()) {
+            SalesOrderItemRow o = rows.next();
+            if (r == maxRowsPerSheet) {
+                sheet = newItemSheet(wb);
+                r = 1;
+            }
+            Row row = sheet.createRow(r++);
+            int c = 0;
+            setCell(row, c++, o.orderId());
+            setCell(row, c++, o.orderNo());
+            setCell(row, c++, o.status() == null ? null : o.status().name());
+            setCell(row, c++, showSensitive ? o.customerName() : MASK);
+            setCell(row, c++, showSensitive ? o.contact() : MASK);
+            setCell(row, c++, showSensitive ? o.currency() : MASK);
+            setCell(row, c++, showSensitive ? o.paymentTerms() : MASK);
+            if (showSensitive) setCell(row, c++, o.totalAmount());
+            else setCell(row, c++, MASK);
+            setCell(row, c++, o.productReq());
+            setCell(row, c++, o.packagingReq());
+            if (o.createdAt() != null) {
+                Cell cell = row.createCell(c);
+                cell.setCellValue(o.createdAt());
+                cell.setCellStyle(dateStyle);
+            }
+            c++;
+            setCell(row, c++, o.productName());
+            setCell(row, c++, o.spec());
+            setCell(row, c++, o.quantity());
+            if (showSensitive) setCell(row, c++, o.unitPrice());
+            else setCell(row, c++, o.productName() == null ? null : MASK);
+            setCell(row, c, o.notes());
+        }
+    }
+
+    private static Sheet newItemSheet(Workbook wb) {
+        int n = wb.getNumberOfSheets();
+        Sheet sheet = wb.createSheet(n == 0 ? "Orders" : "Orders (" + (n + 1) + ")");
+        Row header = sheet.createRow(0);
+        for (int c = 0; c < XLSX_HEADERS.length; c++) {
+            header.createCell(c).setCellValue(XLSX_HEADERS[c]);
+        }
+        return sheet;
+    }
+
+    private static void setCell(Row row, int col, String value) {
+        if (value != null) row.createCell(col).setCellValue(value);
+    }
+
+    private static void setCell(Row row, int col, Number value) {
+        if (value != null) row.createCell(col).setCellValue(value.doubleValue());
+    }
+
+    private static String attachment(String ext) {
+        return ContentDisposition.attachment()
+                .filename("orders_" + LocalDate.now() + "." + ext)
+                .build()
+                .toString();
+    }
+}
@@ -1,43 +1,85 @@
 package com.company.ordertracking.web;
 
+import com.company.ordertracking.entity.ImportJob;
+import com.company.ordertracking.entity.ImportJobStatus;
 import com.company.ordertracking.entity.OrderItem;
 import com.company.ordertracking.entity.OrderStatus;
 import com.company.ordertracking.entity.SalesOrder;
 import com.company.ordertracking.audit.AuditLogService;
+import com.company.ordertracking.imports.ImportJobService;
 import com.company.ordertracking.repo.SalesOrderRepository;
+import com.company.ordertracking.security.SecurityUtil;
 import jakarta.transaction.Transactional;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
+import javax.xml.parsers.ParserConfigurationException;
+
 @RestController
 @RequestMapping("/api/orders/import")
 public class OrderImportController {
 
+    static final int MAX_CHUNK_SIZE = 10_000;
+
     private final SalesOrderRepository salesOrderRepo;
     private final AuditLogService auditLogService;
+    private final ImportJobService importJobService;
+    private final TransactionTemplate txTemplate;
+    private final int defaultChunkSize;
+
+    @PersistenceContext
+    private EntityManager em;
 
     public OrderImportController(SalesOrderRepository salesOrderRepo,
-                                AuditLogService auditLogService) {
+                                AuditLogService auditLogService,
+                                ImportJobService importJobService,
+                                PlatformTransactionManager txManager,
+                                @Value("${app.import.chunk-size:500}") int defaultChunkSize) {
         this.salesOrderRepo = salesOrderRepo;
         this.auditLogService = auditLogService;
+        this.importJobService = importJobService;
+        this.txTemplate = new TransactionTemplate(txManager);
+        this.defaultChunkSize = defaultChunkSize;
     }
 
     public record TextImportRequest(String text, String delimiter) {}
@@ -49,6 +91,33 @@ public class OrderImportController {
                                int ordersImported, int itemsImported,
                                List<String> messages) {}
 
+    // Chunked mode: one entry per committed (or rejected) chunk
+    public record ChunkResult(int chunk, int firstRow, int lastRow, String status,
+                              int orders, int items, List<String> errors) {}
+
+    public record ChunkedImportResult(int importedOrders, int importedItems,
+                                      int chunks, int failedChunks,
+                                      List<ChunkResult> chunkResults) {}
+
+    public record ImportJobView(Long id, ImportJobStatus status, String source, String username,
+                                LocalDateTime createdAt, LocalDateTime startedAt, LocalDateTime finishedAt,
+                                int rowsParsed, int ordersSaved, int itemsSaved, int chunks, int failedChunks,
+                                List<String> errors, double rowsPerSecond) {
+
+        static ImportJobView of(ImportJob j) {
+            double rate = 0;
+            if (j.getStartedAt() != null) {
+                LocalDateTime end = j.getFinishedAt() != null ? j.getFinishedAt() : LocalDateTime.now();
+                long ms = Math.max(1, Duration.between(j.getStartedAt(), end).toMillis());
+                rate = Math.round(j.getRowsParsed() * 10_000.0 / ms) / 10.0;
+            }
+            return new ImportJobView(j.getId(), j.getStatus(), j.getSource(), j.getUsername(),
+                    j.getCreatedAt(), j.getStartedAt(), j.getFinishedAt(),
+                    j.getRowsParsed(), j.getOrdersSaved(), j.getItemsSaved(), j.getChunks(), j.getFailedChunks(),
+                    ImportJobService.errorLines(j), rate);
+        }
+    }
+
     @PostMapping(value = "/file", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     @Transactional
     public ResponseEntity<?> importFromFile(@RequestParam("file") MultipartFile file,
@@ -59,8 +128,12 @@ public class OrderImportController {
         String name = Optional.ofNullable(file.getOriginalFilename()).orElse("").toLowerCase(Locale.ROOT);
         List<ImportRow> rows;
         if (name.endsWith(".csv")) {
-            rows = parseCsv(file.getInputStream());
-        } else if (name.endsWith(".xlsx") || name.endsWith(".xls")) {
+            rows = new ArrayList<>();
+            parseCsv(file.getInputStream(), rows::add);
+        } else if (name.endsWith(".xlsx")) {
+            rows = new ArrayList<>();
+            parseXlsx(file, rows::add);
+        } else if (name.endsWith(".xls")) {
             rows = parseExcel(file.getInputStream());
         } else {
             return ResponseEntity.badRequest().body(Map.of("error", "Only .csv / .xlsx / .xls files are supported"));
@@ -87,6 +160,307 @@ public class OrderImportController {
         return doImport(httpReq, rows);
     }
 
+    /**
+     * Streaming mode (?mode=chunked): rows are read incrementally and written in chunks of at most
+     * {@code chunkSize} rows, each chunk in its own transaction. A chunk with invalid rows or duplicate
+     * orderNos is rejected on its own; chunks already committed stay committed.
+     */
+    @PostMapping(value = "/file", params = "mode=chunked", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> importFromFileChunked(@RequestParam("file") MultipartFile file,
+                                                   @RequestParam(value = "chunkSize", required = false) Integer chunkSize,
+                                                   jakarta.servlet.http.HttpServletRequest httpReq) throws IOException {
+        if (file == null || file.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Please choose a file to upload"));
+        }
+        String name = Optional.ofNullable(file.getOriginalFilename()).orElse("").toLowerCase(Locale.ROOT);
+        ChunkedImport importer = new ChunkedImport(chunkSizeOrDefault(chunkSize));
+        if (name.endsWith(".csv")) {
+            parseCsv(file.getInputStream(), importer);
+        } else if (name.endsWith(".xlsx")) {
+            parseXlsx(file, importer);
+        } else if (name.endsWith(".xls")) {
+            parseExcel(file.getInputStream()).forEach(importer);
+        } else {
+            return ResponseEntity.badRequest().body(Map.of("error", "Only .csv / .xlsx / .xls files are supported"));
+        }
+        return finishChunkedImport(httpReq, importer);
+    }
+
+    @PostMapping(value = "/text", params = "mode=chunked", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> importFromTextChunked(@RequestBody TextImportRequest req,
+                                                   @RequestParam(value = "chunkSize", required = false) Integer chunkSize,
+                                                   jakarta.servlet.http.HttpServletRequest httpReq) {
+        String text = req == null ? null : req.text();
+        if (!StringUtils.hasText(text)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Please paste the table text"));
+        }
+        char delimiter = detectDelimiter(req.delimiter(), text);
+        ChunkedImport importer = new ChunkedImport(chunkSizeOrDefault(chunkSize));
+        try {
+            parseDelimitedText(text, delimiter).forEach(importer);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        return finishChunkedImport(httpReq, importer);
+    }
+
+    /**
+     * Background mode (?mode=async): the upload is staged to a temp file and imported in chunks on the
+     * import job executor. Returns 202 with the job; poll GET /jobs/{id} for progress.
+     */
+    @PostMapping(value = "/file", params = "mode=async", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> importFromFileAsync(@RequestParam("file") MultipartFile file,
+                                                 @RequestParam(value = "chunkSize", required = false) Integer chunkSize,
+                                                 jakarta.servlet.http.HttpServletRequest httpReq) throws IOException {
+        if (file == null || file.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Please choose a file to upload"));
+        }
+        String original = Optional.ofNullable(file.getOriginalFilename()).orElse("");
+        String name = original.toLowerCase(Locale.ROOT);
+        if (!name.endsWith(".csv") && !name.endsWith(".xlsx") && !name.endsWith(".xls")) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Only .csv / .xlsx / .xls files are supported"));
+        }
+        int size = chunkSizeOrDefault(chunkSize);
+        Path staged = stageUpload(file, name.substring(name.lastIndexOf('.')));
+        try {
+            ImportJob job = submitJob(httpReq, original, progress -> {
+                try {
+                    ChunkedImport importer = new ChunkedImport(size, progress);
+                    parseFile(staged, name, importer);
+                    requireRows(importer.finish());
+                } finally {
+                    Files.deleteIfExists(staged);
+                }
+            });
+            return ResponseEntity.accepted().body(ImportJobView.of(job));
+        } catch (RejectedExecutionException e) {
+            Files.deleteIfExists(staged);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("error", "Too many imports are running, please try again later"));
+        }
+    }
+
+    @PostMapping(value = "/text", params = "mode=async", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> importFromTextAsync(@RequestBody TextImportRequest req,
+                                                 @RequestParam(value = "chunkSize", required = false) Integer chunkSize,
+                                                 jakarta.servlet.http.HttpServletRequest httpReq) {
+        String text = req == null ? null : req.text();
+        if (!StringUtils.hasText(text)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Please paste the table text"));
+        }
+        char delimiter = detectDelimiter(req.delimiter(), text);
+        int size = chunkSizeOrDefault(chunkSize);
+        try {
+            ImportJob job = submitJob(httpReq, "text", progress -> {
+                ChunkedImport importer = new ChunkedImport(size, progress);
+                parseDelimitedText(text, delimiter).forEach(importer);
+                requireRows(importer.finish());
+            });
+            return ResponseEntity.accepted().body(ImportJobView.of(job));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("error", "Too many imports are running, please try again later"));
+        }
+    }
+
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<?> getJob(@PathVariable Long id) {
+        return importJobService.find(id)
+                .<ResponseEntity<?>>map(j -> ResponseEntity.ok(ImportJobView.of(j)))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Import job not found")));
+    }
+
+    private ImportJob submitJob(jakarta.servlet.http.HttpServletRequest httpReq, String source, ImportJobService.Task task) {
+        // the job thread has no request / security context: capture who submitted it now
+        return importJobService.submit(source, SecurityUtil.usernameOrNull(), SecurityUtil.roleOrNull(),
+                AuditLogService.extractIp(httpReq), task);
+    }
+
+    private static void requireRows(ChunkedImportResult result) {
+        if (result.chunks() == 0) throw new IllegalArgumentException("No data rows were found");
+    }
+
+    private int chunkSizeOrDefault(Integer requested) {
+        int n = requested == null ? defaultChunkSize : requested;
+        return Math.min(MAX_CHUNK_SIZE, Math.max(1, n));
+    }
+
+    private ResponseEntity<?> finishChunkedImport(jakarta.servlet.http.HttpServletRequest httpReq, ChunkedImport importer) {
+        ChunkedImportResult result = importer.finish();
+        if (result.chunks() == 0) {
+            auditLogService.log(httpReq, "IMPORT_ORDERS", null, AuditLogService.Status.FAIL, "no rows");
+            return ResponseEntity.badRequest().body(Map.of("error", "No data rows were found"));
+        }
+        auditLogService.log(httpReq, "IMPORT_ORDERS", null,
+                result.failedChunks() == 0 ? AuditLogService.Status.SUCCESS : AuditLogService.Status.FAIL,
+                "mode=chunked, orders=" + result.importedOrders() + ", items=" + result.importedItems()
+                        + ", chunks=" + result.chunks() + ", failedChunks=" + result.failedChunks());
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * Buffers rows and writes them chunk by chunk, at most chunkSize rows at a time. When an order's rows
+     * continue past the end of a chunk (or its orderNo shows up again later), the new rows are appended as
+     * items of the order already imported. If the chunk that would have created an order fails, its later
+     * rows are skipped instead of creating the order from them.
+     */
+    private final class ChunkedImport implements Consumer<ImportRow> {
+
+        private static final int MAX_ERRORS_PER_CHUNK = 50;
+
+        private final int chunkSize;
+        private final ImportJobService.Progress progress; // null for synchronous imports
+        private final List<ImportRow> buffer = new ArrayList<>();
+        private final Map<String, Long> importedIds = new HashMap<>(); // orderNo -> id of orders created by this import
+        private final Set<String> failedOrderNos = new HashSet<>(); // orders whose first rows were not imported
+        private final List<ChunkResult> results = new ArrayList<>();
+        private int rowsParsed;
+        private int importedOrders;
+        private int importedItems;
+        private int failedChunks;
+
+        ChunkedImport(int chunkSize) {
+            this(chunkSize, null);
+        }
+
+        ChunkedImport(int chunkSize, ImportJobService.Progress progress) {
+            this.chunkSize = chunkSize;
+            this.progress = progress;
+        }
+
+        @Override
+        public void accept(ImportRow row) {
+            rowsParsed++;
+            buffer.add(row);
+            if (buffer.size() >= chunkSize) flushChunk();
+        }
+
+        ChunkedImportResult finish() {
+            if (!buffer.isEmpty()) flushChunk();
+            return new ChunkedImportResult(importedOrders, importedItems, results.size(), failedChunks, results);
+        }
+
+        private void record(ChunkResult result) {
+            results.add(result);
+            if (!"SUCCESS".equals(result.status())) {
+                failedChunks++;
+                for (ImportRow r : buffer) {
+                    String no = orderNoOf(r);
+                    if (no != null && !importedIds.containsKey(no)) failedOrderNos.add(no);
+                }
+            }
+            buffer.clear();
+            if (progress != null) {
+                List<String> errors = result.errors().stream()
+                        .map(e -> "chunk " + result.chunk() + " (rows " + result.firstRow() + "-" + result.lastRow() + "): " + e)
+                        .toList();
+                progress.update(rowsParsed, importedOrders, importedItems, results.size(), failedChunks, errors);
+            }
+        }
+
+        private void flushChunk() {
+            int index = results.size() + 1;
+            int firstRow = buffer.get(0).rowNumber();
+            int lastRow = buffer.get(buffer.size() - 1).rowNumber();
+
+            List<String> skipped = skipRowsOfFailedOrders();
+            if (buffer.isEmpty()) {
+                record(new ChunkResult(index, firstRow, lastRow, "SKIPPED", 0, 0, cap(skipped)));
+                return;
+            }
+
+            List<String> errors = validate(buffer);
+            if (!errors.isEmpty()) {
+                errors.addAll(skipped);
+                record(new ChunkResult(index, firstRow, lastRow, "INVALID", 0, 0, cap(errors)));
+                return;
+            }
+
+            Map<String, List<ImportRow>> byOrder = buffer.stream()
+                    .collect(Collectors.groupingBy(r -> r.orderNo().trim(), LinkedHashMap::new, Collectors.toList()));
+            ChunkResult result;
+            try {
+                result = txTemplate.execute(status -> writeChunk(index, firstRow, lastRow, byOrder));
+            } catch (RuntimeException e) {
+                result = new ChunkResult(index, firstRow, lastRow, "FAILED", 0, 0,
+                        List.of(e.getClass().getSimpleName() + ": " + e.getMessage()));
+            }
+            if (!skipped.isEmpty()) {
+                List<String> all = new ArrayList<>(result.errors());
+                all.addAll(skipped);
+                result = new ChunkResult(result.chunk(), result.firstRow(), result.lastRow(),
+                        "SUCCESS".equals(result.status()) ? "PARTIAL" : result.status(),
+                        result.orders(), result.items(), cap(all));
+            }
+            record(result);
+        }
+
+        /** Drops the buffered rows of orders whose first rows were not imported; one message per order. */
+        private List<String> skipRowsOfFailedOrders() {
+            if (failedOrderNos.isEmpty()) return new ArrayList<>();
+            Map<String, Integer> counts = new LinkedHashMap<>();
+            buffer.removeIf(r -> {
+                String no = orderNoOf(r);
+                if (no == null || !failedOrderNos.contains(no)) return false;
+                counts.merge(no, 1, Integer::sum);
+                return true;
+            });
+            List<String> skipped = new ArrayList<>();
+            counts.forEach((no, n) -> skipped.add("orderNo " + no + ": " + n + " row(s) skipped, its first rows were not imported"));
+            return skipped;
+        }
+
+        private static String orderNoOf(ImportRow r) {
+            return r.orderNo() == null || r.orderNo().isBlank() ? null : r.orderNo().trim();
+        }
+
+        private ChunkResult writeChunk(int index, int firstRow, int lastRow, Map<String, List<ImportRow>> byOrder) {
+            List<String> newOrderNos = byOrder.keySet().stream()
+                    .filter(no -> !importedIds.containsKey(no))
+                    .toList();
+            if (!newOrderNos.isEmpty()) {
+                List<String> dup = salesOrderRepo.findByOrderNoIn(newOrderNos).stream()
+                        .map(SalesOrder::getOrderNo).sorted().toList();
+                if (!dup.isEmpty()) {
+                    return new ChunkResult(index, firstRow, lastRow, "DUPLICATE", 0, 0,
+                            cap(dup.stream().map(no -> "orderNo already exists: " + no).toList()));
+                }
+            }
+
+            int orders = 0;
+            int items = 0;
+            Map<String, SalesOrder> created = new LinkedHashMap<>();
+            for (Map.Entry<String, List<ImportRow>> e : byOrder.entrySet()) {
+                Long existingId = importedIds.get(e.getKey());
+                if (existingId != null) {
+                    // continuation of an order committed in an earlier chunk
+                    SalesOrder ref = em.getReference(SalesOrder.class, existingId);
+                    for (OrderItem it : buildItems(ref, e.getValue())) {
+                        em.persist(it);
+                        items++;
+                    }
+                } else {
+                    SalesOrder o = buildOrder(e.getKey(), e.getValue());
+                    em.persist(o);
+                    created.put(e.getKey(), o);
+                    orders++;
+                    items += o.getItems().size();
+                }
+            }
+            em.flush();
+            created.forEach((no, o) -> importedIds.put(no, o.getId()));
+            em.clear();
+
+            importedOrders += orders;
+            importedItems += items;
+            return new ChunkResult(index, firstRow, lastRow, "SUCCESS", orders, items, List.of());
+        }
+
+        private List<String> cap(List<String> errors) {
+            return errors.size() <= MAX_ERRORS_PER_CHUNK ? errors : errors.subList(0, MAX_ERRORS_PER_CHUNK);
+        }
+    }
+
     // ---------------- core import ----------------
 
     private ResponseEntity<?> doImport(jakarta.servlet.http.HttpServletRequest httpReq, List<ImportRow> rows) {
@@ -96,15 +470,7 @@ public class OrderImportController {
         }
 
         // validate required fields
-        List<String> errors = new ArrayList<>();
-        for (ImportRow r : rows) {
-            if (!StringUtils.hasText(r.orderNo())) {
-                errors.add("Row " + r.rowNumber() + " is missing orderNo (order number)");
-            }
-            if (r.hasBadNumber()) {
-                errors.add("Row " + r.rowNumber() + " has invalid number format: quantity / unitPrice / totalAmount");
-            }
-        }
+        List<String> errors = validate(rows);
         if (!errors.isEmpty()) {
             auditLogService.log(httpReq, "IMPORT_ORDERS", null, AuditLogService.Status.FAIL, "validation errors: " + errors.size());
             return ResponseEntity.badRequest().body(Map.of(
@@ -133,40 +499,8 @@ public class OrderImportController {
         List<SalesOrder> toSave = new ArrayList<>();
 
         for (Map.Entry<String, List<ImportRow>> e : byOrder.entrySet()) {
-            String orderNo = e.getKey();
-            List<ImportRow> group = e.getValue();
-            ImportRow first = group.get(0);
-
-            SalesOrder o = new SalesOrder();
-            o.setOrderNo(orderNo);
-            o.setCustomerName(blankToNull(first.customerName()));
-            // Note: In this project the entity field is named `contact`.
-            o.setContact(blankToNull(first.customerContact()));
-            o.setCurrency(blankToNull(first.currency()));
-            o.setPaymentTerms(blankToNull(first.paymentTerms()));
-            // Entity column is BigDecimal, while imports parse numeric totals as Double.
-            if (first.totalAmount() != null) o.setTotalAmount(java.math.BigDecimal.valueOf(first.totalAmount()));
-            // Entity field names are `productReq` / `packagingReq`.
-            o.setProductReq(blankToNull(first.productRequirements()));
-            o.setPackagingReq(blankToNull(first.packagingRequirements()));
-            o.setStatus(OrderStatus.DRAFT);
-
-            List<OrderItem> items = new ArrayList<>();
-            for (ImportRow r : group) {
-                if (!r.hasAnyItemField()) continue;
-                OrderItem it = new OrderItem();
-                // In this project OrderItem links to SalesOrder via `order`.
-                it.setOrder(o);
-                it.setProductName(blankToNull(r.productName()));
-                it.setSpec(blankToNull(r.spec()));
-                it.setQuantity(r.quantity());
-                it.setUnitPrice(r.unitPrice());
-                it.setNotes(blankToNull(r.remark()));
-                items.add(it);
-                importedItems++;
-            }
-            o.setItems(items);
-
+            SalesOrder o = buildOrder(e.getKey(), e.getValue());
+            importedItems += o.getItems().size();
             toSave.add(o);
         }
 
@@ -177,6 +511,59 @@ public class OrderImportController {
         return ResponseEntity.ok(new ImportResult(toSave.size(), importedItems, toSave.size(), importedItems, List.of("Import succeeded")));
     }
 
+    private static List<String> validate(List<ImportRow> rows) {
+        List<String> errors = new ArrayList<>();
+        for (ImportRow r : rows) {
+            if (!StringUtils.hasText(r.orderNo())) {
+                errors.add("Row " + r.rowNumber() + " is missing orderNo (order number)");
+            }
+            if (r.hasBadNumber()) {
+                errors.add("Row " + r.rowNumber() + " has invalid number format: quantity / unitPrice / totalAmount");
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Builds one order from its rows: header fields come from the first row, every row with item data becomes an item.
+     */
+    private static SalesOrder buildOrder(String orderNo, List<ImportRow> group) {
+        ImportRow first = group.get(0);
+
+        SalesOrder o = new SalesOrder();
+        o.setOrderNo(orderNo);
+        o.setCustomerName(blankToNull(first.customerName()));
+        // Note: In this project the entity field is named `contact`.
+        o.setContact(blankToNull(first.customerContact()));
+        o.setCurrency(blankToNull(first.currency()));
+        o.setPaymentTerms(blankToNull(first.paymentTerms()));
+        // Entity column is BigDecimal, while imports parse numeric totals as Double.
+        if (first.totalAmount() != null) o.setTotalAmount(java.math.BigDecimal.valueOf(first.totalAmount()));
+        // Entity field names are `productReq` / `packagingReq`.
+        o.setProductReq(blankToNull(first.productRequirements()));
+        o.setPackagingReq(blankToNull(first.packagingRequirements()));
+        o.setStatus(OrderStatus.DRAFT);
+        o.setItems(buildItems(o, group));
+        return o;
+    }
+
+    private static List<OrderItem> buildItems(SalesOrder o, List<ImportRow> group) {
+        List<OrderItem> items = new ArrayList<>();
+        for (ImportRow r : group) {
+            if (!r.hasAnyItemField()) continue;
+            OrderItem it = new OrderItem();
+            // In this project OrderItem links to SalesOrder via `order`.
+            it.setOrder(o);
+            it.setProductName(blankToNull(r.productName()));
+            it.setSpec(blankToNull(r.spec()));
+            it.setQuantity(r.quantity());
+            it.setUnitPrice(r.unitPrice());
+            it.setNotes(blankToNull(r.remark()));
+            items.add(it);
+        }
+        return items;
+    }
+
     private static String blankToNull(String s) {
         if (!StringUtils.hasText(s)) return null;
         String t = s.trim();
@@ -248,7 +635,7 @@ public class OrderImportController {
         return parts;
     }
 
-    private List<ImportRow> parseCsv(InputStream in) throws IOException {
+    private void parseCsv(InputStream in, Consumer<ImportRow> sink) throws IOException {
         try (BufferedReader br = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
             CSVParser parser = CSVFormat.DEFAULT
                     .builder()
@@ -265,7 +652,6 @@ public class OrderImportController {
                 throw new IllegalArgumentException("CSV header must include the orderNo column");
             }
 
-            List<ImportRow> rows = new ArrayList<>();
             int rowNumber = 1; // header is row 1
             for (CSVRecord rec : parser) {
                 rowNumber++;
@@ -273,12 +659,118 @@ public class OrderImportController {
                 for (String h : headers) {
                     cols.add(rec.isMapped(h) ? rec.get(h) : "");
                 }
-                rows.add(hm.toRow(rowNumber, cols));
+                sink.accept(hm.toRow(rowNumber, cols));
             }
-            return rows;
         }
     }
 
+    /**
+     * Streaming .xlsx parser (SAX over the sheet XML, read-only shared strings): rows are emitted to
+     * {@code sink} one by one, so memory does not grow with the sheet the way a WorkbookFactory DOM does.
+     */
+    private void parseXlsx(MultipartFile file, Consumer<ImportRow> sink) throws IOException {
+        // OPCPackage.open(InputStream) would buffer the whole zip; open it from a temp file instead
+        Path tmp = stageUpload(file, ".xlsx");
+        try {
+            parseXlsx(tmp, sink);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private void parseXlsx(Path path, Consumer<ImportRow> sink) throws IOException {
+        try {
+            try (OPCPackage pkg = OPCPackage.open(path.toFile(), PackageAccess.READ)) {
+                XSSFReader reader = new XSSFReader(pkg);
+                Iterator<InputStream> sheets = reader.getSheetsData();
+                if (!sheets.hasNext()) return;
+
+                ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+                XlsxRowHandler rowHandler = new XlsxRowHandler(sink);
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new XSSFSheetXMLHandler(reader.getStylesTable(), null, strings,
+                        rowHandler, new DataFormatter(Locale.ROOT), false));
+                try (InputStream sheet = sheets.next()) {
+                    parser.parse(new InputSource(sheet));
+                }
+            }
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("Failed to read .xlsx file: " + e.getMessage(), e);
+        }
+    }
+
+    private void parseFile(Path path, String lowerName, Consumer<ImportRow> sink) throws IOException {
+        if (lowerName.endsWith(".xlsx")) {
+            parseXlsx(path, sink);
+            return;
+        }
+        try (InputStream in = Files.newInputStream(path)) {
+            if (lowerName.endsWith(".csv")) parseCsv(in, sink);
+            else parseExcel(in).forEach(sink);
+        }
+    }
+
+    private static Path stageUpload(MultipartFile file, String suffix) throws IOException {
+        Path tmp = Files.createTempFile("order-import-", suffix);
+        try {
+            file.transferTo(tmp);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        return tmp;
+    }
+
+    /**
+     * Collects the cells of one sheet row at a time; the first row is the header.
+     */
+    private static final class XlsxRowHandler implements XSSFSheetXMLHandler.SheetContentsHandler {
+
+        private final Consumer<ImportRow> sink;
+        private final List<String> cells = new ArrayList<>();
+        private HeaderMap hm;
+        private int headerSize;
+
+        XlsxRowHandler(Consumer<ImportRow> sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            cells.clear();
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int col = new CellReference(cellReference).getCol();
+            while (cells.size() <= col) cells.add("");
+            cells.set(col, formattedValue == null ? "" : formattedValue);
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (hm == null) {
+                hm = HeaderMap.fromHeaders(cells);
+                headerSize = cells.size();
+                if (!hm.hasOrderNo()) {
+                    throw new IllegalArgumentException("Excel header must include the orderNo column");
+                }
+                return;
+            }
+            List<String> cols = new ArrayList<>(headerSize);
+            for (int i = 0; i < headerSize; i++) {
+                cols.add(i < cells.size() ? cells.get(i) : "");
+            }
+            // skip fully blank lines
+            boolean allBlank = cols.stream().allMatch(c -> !StringUtils.hasText(c));
+            if (allBlank) return;
+            sink.accept(hm.toRow(rowNum + 1, cols));
+        }
+    }
+
+    /**
+     * Legacy .xls (HSSF) has no streaming user model here; those files are small in practice.
+     */
     private List<ImportRow> parseExcel(InputStream in) throws IOException {
         try (Workbook wb = WorkbookFactory.create(in)) {
             Sheet sheet = wb.getNumberOfSheets() > 0 ? wb.getSheetAt(0) : null;
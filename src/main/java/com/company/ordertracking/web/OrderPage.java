@@ -0,0 +1,15 @@
+package com.company.ordertracking.web;
+
+import com.company.ordertracking.repo.SalesOrderSummary;
+
+import java.util.List;
+
+/**
+ * One page of the order list (keyset pagination, no total count).
+ * Pass nextCursor back as ?cursor=... to get the following page (see {@link KeysetCursor}).
+ */
+public class OrderPage {
+    public List<SalesOrderSummary> content;
+    public String nextCursor; // null when there are no more rows
+    public boolean hasMore;
+}
@@ -1,48 +1,95 @@
 package com.company.ordertracking.web;
 
 import com.company.ordertracking.entity.OrderPhoto;
+import com.company.ordertracking.entity.OrderStatus;
+import com.company.ordertracking.entity.PhotoUpload;
 import com.company.ordertracking.entity.SalesOrder;
 import com.company.ordertracking.audit.AuditLogService;
+import com.company.ordertracking.photos.PhotoDerivatives;
+import com.company.ordertracking.photos.PhotoStore;
+import com.company.ordertracking.photos.PhotoUploads;
 import com.company.ordertracking.repo.OrderPhotoRepository;
+import com.company.ordertracking.repo.SalesOrderFilter;
 import com.company.ordertracking.repo.SalesOrderRepository;
+import com.company.ordertracking.repo.SalesOrderSpecs;
+import com.company.ordertracking.repo.SalesOrderSummary;
+import com.company.ordertracking.security.SecurityUtil;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.*;
-import org.springframework.util.StringUtils;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @RestController
 @RequestMapping("/api")
 public class OrderPhotoController {
 
+    private static final Logger log = LoggerFactory.getLogger(OrderPhotoController.class);
+
     private final OrderPhotoRepository photoRepo;
     private final SalesOrderRepository orderRepo;
     private final AuditLogService auditLogService;
+    private final PhotoDerivatives derivatives;
+    private final PhotoStore photoStore;
+    private final PhotoUploads photoUploads;
 
     private final Path uploadDir;
+    private final long cacheMaxAgeSeconds;
+    private final int zipMaxOrders;
+
+    /** Orders whose photos are read per query while writing a multi-order ZIP. */
+    private static final int ZIP_ORDER_BATCH = 100;
 
     public OrderPhotoController(OrderPhotoRepository photoRepo,
                                SalesOrderRepository orderRepo,
                                AuditLogService auditLogService,
-                               @Value("${app.upload.dir:uploads}") String uploadDir) {
+                               PhotoDerivatives derivatives,
+                               PhotoStore photoStore,
+                               PhotoUploads photoUploads,
+                               @Value("${app.upload.dir:uploads}") String uploadDir,
+                               @Value("${app.photos.cache-max-age-seconds:31536000}") long cacheMaxAgeSeconds,
+                               @Value("${app.photos.zip.max-orders:1000}") int zipMaxOrders) {
         this.photoRepo = photoRepo;
         this.orderRepo = orderRepo;
         this.auditLogService = auditLogService;
+        this.derivatives = derivatives;
+        this.photoStore = photoStore;
+        this.photoUploads = photoUploads;
         this.uploadDir = Paths.get(uploadDir).toAbsolutePath().normalize();
+        this.cacheMaxAgeSeconds = cacheMaxAgeSeconds;
+        this.zipMaxOrders = zipMaxOrders;
     }
 
     public record PhotoDto(Long id, String originalFilename, String contentType, long size,
                            Instant createdAt, String url) {}
 
+    public record UploadInitRequest(String filename, String contentType, Long size) {}
+
+    /**
+     * State of a chunked upload: send chunk i as bytes [i * chunkSize, min((i + 1) * chunkSize, totalSize) - 1].
+     */
+    public record UploadDto(String uploadId, long totalSize, int chunkSize, int chunkCount, long receivedBytes,
+                            List<Integer> missingChunks, PhotoDto photo) {}
+
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+)");
+
     @GetMapping("/orders/{orderId}/photos")
     public List<PhotoDto> list(@PathVariable Long orderId) {
         // Ensure order exists for nicer errors
@@ -51,14 +98,7 @@ public class OrderPhotoController {
         }
         return photoRepo.findByOrder_IdOrderByCreatedAtDesc(orderId)
                 .stream()
-                .map(p -> new PhotoDto(
-                        p.getId(),
-                        p.getOriginalFilename(),
-                        p.getContentType(),
-                        p.getFileSize(),
-                        p.getCreatedAt(),
-                        "/api/photos/" + p.getId() + "/content"
-                ))
+                .map(OrderPhotoController::toDto)
                 .toList();
     }
 
@@ -85,59 +125,219 @@ public class OrderPhotoController {
             throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "Image too large (>10MB)");
         }
 
-        Files.createDirectories(uploadDir);
-
         String original = Optional.ofNullable(file.getOriginalFilename()).orElse("image");
         original = Paths.get(original).getFileName().toString(); // prevent path traversal
-        String ext = StringUtils.getFilenameExtension(original);
-        String stored = orderId + "_" + UUID.randomUUID() + (ext != null && !ext.isBlank() ? "." + ext : "");
-        Path target = uploadDir.resolve(stored).normalize();
-        if (!target.startsWith(uploadDir)) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid filename");
-        }
 
+        // stored once per content (SHA-256); the same picture on several orders shares one file
+        PhotoStore.Staged staged;
         try (InputStream in = file.getInputStream()) {
-            Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+            staged = photoStore.stage(in);
         }
-
-        OrderPhoto photo = new OrderPhoto();
-        photo.setOrder(order);
-        photo.setStoredFilename(stored);
-        photo.setOriginalFilename(original);
-        photo.setContentType(contentType);
-        photo.setFileSize(file.getSize());
-
-        photoRepo.save(photo);
+        OrderPhoto photo;
+        try {
+            photo = photoStore.add(order, staged, original, contentType);
+        } finally {
+            photoStore.discard(staged);
+        }
+        derivatives.generateAsync(photo.getStoredFilename());
 
         auditLogService.log(httpReq, "UPLOAD_PHOTO", "orderId=" + orderId, AuditLogService.Status.SUCCESS,
                 "photoId=" + photo.getId() + ", name=" + photo.getOriginalFilename());
 
-        return new PhotoDto(photo.getId(), photo.getOriginalFilename(), photo.getContentType(), photo.getFileSize(),
-                photo.getCreatedAt(), "/api/photos/" + photo.getId() + "/content");
+        return toDto(photo);
+    }
+
+    /**
+     * Starts a resumable chunked upload (for large photos or unreliable connections). Then PUT each chunk to
+     * /api/photo-uploads/{uploadId} with a Content-Range header, GET that URL to see what is still missing after an
+     * interruption, and POST .../complete to attach the photo to the order.
+     */
+    @PostMapping("/orders/{orderId}/photo-uploads")
+    public ResponseEntity<UploadDto> initUpload(@PathVariable Long orderId,
+                                                @RequestBody UploadInitRequest req) throws IOException {
+        if (req == null || req.size() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "size is required");
+        }
+        PhotoUpload u = photoUploads.init(orderId, req.filename(),
+                Optional.ofNullable(req.contentType()).orElse("application/octet-stream"), req.size(),
+                SecurityUtil.usernameOrNull());
+        return ResponseEntity.status(HttpStatus.CREATED).body(toUploadDto(u, null));
+    }
+
+    @GetMapping("/photo-uploads/{uploadId}")
+    public UploadDto uploadStatus(@PathVariable String uploadId) {
+        PhotoUpload u = photoUploads.find(uploadId, SecurityUtil.usernameOrNull());
+        return toUploadDto(u, null);
+    }
+
+    @PutMapping("/photo-uploads/{uploadId}")
+    public UploadDto uploadChunk(@PathVariable String uploadId,
+                                 @RequestHeader(HttpHeaders.CONTENT_RANGE) String contentRange,
+                                 jakarta.servlet.http.HttpServletRequest httpReq) throws IOException {
+        Matcher m = CONTENT_RANGE.matcher(contentRange.trim());
+        if (!m.matches()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Content-Range must look like 'bytes 0-1048575/5000000'");
+        }
+        // the body is read straight from the request stream, never buffered whole
+        PhotoUpload u;
+        try (InputStream in = httpReq.getInputStream()) {
+            u = photoUploads.writeChunk(uploadId, SecurityUtil.usernameOrNull(),
+                    Long.parseLong(m.group(1)), Long.parseLong(m.group(2)), Long.parseLong(m.group(3)), in);
+        }
+        return toUploadDto(u, null);
+    }
+
+    @PostMapping("/photo-uploads/{uploadId}/complete")
+    public UploadDto completeUpload(@PathVariable String uploadId,
+                                    jakarta.servlet.http.HttpServletRequest httpReq) throws IOException {
+        boolean alreadyDone = photoUploads.find(uploadId, SecurityUtil.usernameOrNull()).getPhotoId() != null;
+        OrderPhoto photo = photoUploads.complete(uploadId, SecurityUtil.usernameOrNull());
+        if (!alreadyDone) {
+            derivatives.generateAsync(photo.getStoredFilename());
+            auditLogService.log(httpReq, "UPLOAD_PHOTO", "orderId=" + photo.getOrder().getId(), AuditLogService.Status.SUCCESS,
+                    "photoId=" + photo.getId() + ", name=" + photo.getOriginalFilename() + ", chunked=true");
+        }
+        return toUploadDto(photoUploads.find(uploadId, SecurityUtil.usernameOrNull()), toDto(photo));
+    }
+
+    @DeleteMapping("/photo-uploads/{uploadId}")
+    public Map<String, Object> abortUpload(@PathVariable String uploadId) throws IOException {
+        photoUploads.abort(uploadId, SecurityUtil.usernameOrNull());
+        return Map.of("ok", true);
+    }
+
+    private static UploadDto toUploadDto(PhotoUpload u, PhotoDto photo) {
+        return new UploadDto(u.getId(), u.getTotalSize(), u.getChunkSize(), u.chunkCount(),
+                PhotoUploads.receivedBytes(u), PhotoUploads.missingChunks(u), photo);
+    }
+
+    private static PhotoDto toDto(OrderPhoto p) {
+        return new PhotoDto(p.getId(), p.getOriginalFilename(), p.getContentType(), p.getFileSize(),
+                p.getCreatedAt(), "/api/photos/" + p.getId() + "/content");
     }
 
+    /**
+     * size=thumb (200px) or size=preview (1024px) serves a JPEG derivative; until it has been generated
+     * (or when the format cannot be decoded) the original is served instead.
+     * <p>
+     * Stored files never change after upload (every upload gets a new name), so responses carry a strong ETag
+     * derived from the file name and may be cached as immutable; If-None-Match and Range are honoured.
+     * A fallback original for a missing derivative is sent with no-cache so the derivative replaces it later.
+     */
     @GetMapping("/photos/{photoId}/content")
-    public ResponseEntity<Resource> content(@PathVariable Long photoId) throws IOException {
+    public void content(@PathVariable Long photoId,
+                        @RequestParam(value = "size", required = false) String size,
+                        jakarta.servlet.http.HttpServletRequest request,
+                        jakarta.servlet.http.HttpServletResponse response) throws IOException {
+        PhotoDerivatives.Size variant;
+        try {
+            variant = PhotoDerivatives.Size.fromParam(size);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "size must be thumb, preview or original");
+        }
         OrderPhoto photo = photoRepo.findById(photoId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Photo not found"));
 
-        Path file = uploadDir.resolve(photo.getStoredFilename()).normalize();
+        Path derivative = variant == null ? null : derivatives.path(photo.getStoredFilename(), variant);
+        Path file = derivative != null ? derivative : uploadDir.resolve(photo.getStoredFilename()).normalize();
         if (!Files.exists(file)) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "File missing on disk");
         }
 
-        Resource res = new UrlResource(file.toUri());
         MediaType mt;
         try {
-            mt = MediaType.parseMediaType(Optional.ofNullable(photo.getContentType()).orElse("application/octet-stream"));
+            mt = derivative != null ? MediaType.IMAGE_JPEG
+                    : MediaType.parseMediaType(Optional.ofNullable(photo.getContentType()).orElse("application/octet-stream"));
         } catch (InvalidMediaTypeException ignored) {
             mt = MediaType.APPLICATION_OCTET_STREAM;
         }
 
-        return ResponseEntity.ok()
-                .contentType(mt)
-                .header(HttpHeaders.CACHE_CONTROL, "no-store")
-                .body(res);
+        boolean fallback = variant != null && derivative == null;
+        String etag = "\"" + DigestUtils.md5DigestAsHex(uploadDir.relativize(file).toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+        String cacheControl = fallback ? "private, no-cache" : "private, max-age=" + cacheMaxAgeSeconds + ", immutable";
+        FileSender.send(request, response, file, mt, etag, cacheControl);
+    }
+
+    /**
+     * All photos of one order as a ZIP, streamed from disk (see {@link PhotoZip}).
+     * No transaction is held while the archive is written.
+     */
+    @GetMapping("/orders/{orderId}/photos.zip")
+    public void zip(@PathVariable Long orderId, HttpServletResponse response) throws IOException {
+        SalesOrder order = orderRepo.findById(orderId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Order not found"));
+        List<OrderPhoto> photos = photoRepo.findByOrder_IdInOrderByOrder_IdAscIdAsc(List.of(orderId));
+
+        startZip(response, "photos_" + PhotoZip.safeName(order.getOrderNo(), "order-" + orderId));
+        try (PhotoZip zip = new PhotoZip(new BufferedOutputStream(response.getOutputStream(), 64 * 1024), uploadDir)) {
+            for (OrderPhoto p : photos) zip.add(null, p);
+            warnMissing(zip, "order " + orderId);
+        }
+    }
+
+    /**
+     * Photos of many orders (e.g. everything shipped this month for the customer QC packs), one folder per order
+     * number. Orders are picked by id (ids=1,2,3) or by the same filters as the order list; at most
+     * app.photos.zip.max-orders of them, newest first.
+     */
+    @GetMapping("/orders/photos.zip")
+    public void zipMany(@RequestParam(value = "ids", required = false) List<Long> ids,
+                        @RequestParam(value = "status", required = false) OrderStatus status,
+                        @RequestParam(value = "createdFrom", required = false)
+                        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdFrom,
+                        @RequestParam(value = "createdTo", required = false)
+                        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdTo,
+                        @RequestParam(value = "customerName", required = false) String customerName,
+                        @RequestParam(value = "orderNo", required = false) String orderNo,
+                        HttpServletResponse response) throws IOException {
+        Map<Long, String> orders = new LinkedHashMap<>();
+        if (ids != null && !ids.isEmpty()) {
+            if (ids.size() > zipMaxOrders) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + zipMaxOrders + " orders per download");
+            }
+            for (SalesOrder o : orderRepo.findAllById(ids)) orders.put(o.getId(), o.getOrderNo());
+        } else {
+            SalesOrderFilter filter = new SalesOrderFilter(status, createdFrom, createdTo, customerName, orderNo);
+            List<SalesOrderSummary> rows = orderRepo.findSummaries(SalesOrderSpecs.matching(filter), zipMaxOrders + 1);
+            if (rows.size() > zipMaxOrders) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "More than " + zipMaxOrders + " orders match; narrow the filter");
+            }
+            for (SalesOrderSummary o : rows) orders.put(o.id(), o.orderNo());
+        }
+
+        startZip(response, "order-photos_" + LocalDate.now());
+        List<Long> orderIds = new ArrayList<>(orders.keySet());
+        try (PhotoZip zip = new PhotoZip(new BufferedOutputStream(response.getOutputStream(), 64 * 1024), uploadDir)) {
+            for (int i = 0; i < orderIds.size(); i += ZIP_ORDER_BATCH) {
+                List<Long> batch = orderIds.subList(i, Math.min(orderIds.size(), i + ZIP_ORDER_BATCH));
+                Map<Long, List<OrderPhoto>> byOrder = new HashMap<>();
+                for (OrderPhoto p : photoRepo.findByOrder_IdInOrderByOrder_IdAscIdAsc(batch)) {
+                    byOrder.computeIfAbsent(p.getOrder().getId(), k -> new ArrayList<>()).add(p);
+                }
+                for (Long id : batch) {
+                    String folder = Optional.ofNullable(orders.get(id)).orElse("order-" + id);
+                    for (OrderPhoto p : byOrder.getOrDefault(id, List.of())) zip.add(folder, p);
+                }
+            }
+            warnMissing(zip, orderIds.size() + " orders");
+        }
+    }
+
+    /** The download lists them in MISSING.txt; a photo row without its file also needs looking at on the server. */
+    private static void warnMissing(PhotoZip zip, String what) {
+        if (zip.missingCount() > 0) {
+            log.warn("Photo ZIP for {} skipped {} photo(s) whose file is missing under the upload dir",
+                    what, zip.missingCount());
+        }
+    }
+
+    private static void startZip(HttpServletResponse response, String basename) {
+        response.setContentType("application/zip");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(basename + ".zip", StandardCharsets.UTF_8)
+                .build()
+                .toString());
     }
 
     @DeleteMapping("/photos/{photoId}")
@@ -147,16 +347,48 @@ public class OrderPhotoController {
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Photo not found"));
         Long orderId = photo.getOrder() == null ? null : photo.getOrder().getId();
         String name = photo.getOriginalFilename();
-        photoRepo.delete(photo);
+        photoStore.remove(photo);
 
-        // Best-effort delete from disk
-        try {
-            Files.deleteIfExists(uploadDir.resolve(photo.getStoredFilename()).normalize());
-        } catch (IOException ignored) {}
+        if (photo.getContentHash() == null) {
+            // Pre-V19 flat file: best-effort delete from disk (the photo GC sweeps up whatever is left)
+            try {
+                Files.deleteIfExists(uploadDir.resolve(photo.getStoredFilename()).normalize());
+            } catch (IOException ignored) {}
+            derivatives.delete(photo.getStoredFilename());
+        }
 
         auditLogService.log(httpReq, "DELETE_PHOTO", "orderId=" + orderId, AuditLogService.Status.SUCCESS,
                 "photoId=" + photoId + ", name=" + name);
 
         return Map.of("ok", true);
     }
+
+    /**
+     * Generates missing thumb / preview derivatives for all existing photos in the background
+     * (also runs once at startup). GET reports the progress of the current or last pass.
+     */
+    @PostMapping("/admin/photo-derivatives/backfill")
+    public ResponseEntity<?> backfillDerivatives() {
+        if (!derivatives.backfill()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", "Backfill already running or derivative queue full"));
+        }
+        return ResponseEntity.accepted().body(derivatives.backfillStats());
+    }
+
+    @GetMapping("/admin/photo-derivatives/backfill")
+    public PhotoDerivatives.BackfillStats backfillStatus() {
+        return derivatives.backfillStats();
+    }
+
+    /**
+     * Runs the photo garbage collection now instead of waiting for the nightly run.
+     */
+    @PostMapping("/admin/photo-gc")
+    public ResponseEntity<?> collectPhotos() {
+        PhotoStore.GcStats stats = photoStore.collect();
+        if (stats == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", "Photo GC already running"));
+        }
+        return ResponseEntity.ok(stats);
+    }
 }
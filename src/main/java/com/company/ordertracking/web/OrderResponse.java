@@ -5,6 +5,7 @@ import com.company.ordertracking.entity.OrderStatus;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
 public class OrderResponse {
@@ -70,6 +71,17 @@ public class OrderResponse {
         public LocalDateTime updatedAt;
     }
 
+    /**
+     * Result of a merge save (PATCH): only the rows that were inserted, changed or removed.
+     * created is in request order, so a client can match the new ids to the rows it sent without one.
+     */
+    public static class Changes<T> {
+        public List<T> created = new ArrayList<>();
+        public List<T> updated = new ArrayList<>();
+        public List<Long> deleted = new ArrayList<>();
+        public int unchanged;
+    }
+
     public static class WarehouseReceipt {
         public Long id;
         public LocalDateTime receivedAt;
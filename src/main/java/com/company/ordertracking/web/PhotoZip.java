@@ -0,0 +1,118 @@
+package com.company.ordertracking.web;
+
+import com.company.ordertracking.entity.OrderPhoto;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes stored photos into a ZIP on the fly: every entry is copied from disk straight into the response, nothing is
+ * assembled in memory or in a temp file.
+ * <p>
+ * Formats that are already compressed (JPEG, PNG, WebP, HEIC, ...) are written STORED: deflating them costs CPU and
+ * saves nothing. A STORED entry needs its CRC before its header is written, so those files are read twice; the
+ * second read comes from the page cache. Files missing on disk are skipped and listed in MISSING.txt.
+ */
+final class PhotoZip implements AutoCloseable {
+
+    private static final Set<String> COMPRESSED_TYPES = Set.of(
+            "image/jpeg", "image/jpg", "image/pjpeg", "image/png", "image/gif", "image/webp",
+            "image/heic", "image/heif", "image/avif");
+
+    private static final int CRC_BUFFER_BYTES = 64 * 1024;
+
+    private final ZipOutputStream zip;
+    private final Path uploadDir;
+    private final List<String> missing = new ArrayList<>();
+    private final ByteBuffer crcBuffer = ByteBuffer.allocateDirect(CRC_BUFFER_BYTES);
+
+    PhotoZip(OutputStream out, Path uploadDir) {
+        this.zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+        this.uploadDir = uploadDir;
+    }
+
+    /**
+     * @param folder directory inside the archive (e.g. the order number), or null for the root
+     */
+    void add(String folder, OrderPhoto photo) throws IOException {
+        // the photo id keeps names unique within a folder
+        String name = (folder == null ? "" : safeName(folder, "order") + "/")
+                + photo.getId() + "_" + safeName(photo.getOriginalFilename(), "photo");
+        Path file = uploadDir.resolve(photo.getStoredFilename()).normalize();
+        if (!file.startsWith(uploadDir) || !Files.isRegularFile(file)) {
+            missing.add(name);
+            return;
+        }
+
+        ZipEntry entry = new ZipEntry(name);
+        if (photo.getCreatedAt() != null) entry.setTime(photo.getCreatedAt().toEpochMilli());
+        if (isCompressed(photo.getContentType())) {
+            long size = Files.size(file);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(size);
+            entry.setCompressedSize(size);
+            entry.setCrc(crc(file));
+        } else {
+            entry.setMethod(ZipEntry.DEFLATED);
+        }
+        zip.putNextEntry(entry);
+        Files.copy(file, zip);
+        zip.closeEntry();
+    }
+
+    /** Number of photos skipped because their file is gone. */
+    int missingCount() {
+        return missing.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!missing.isEmpty()) {
+            zip.putNextEntry(new ZipEntry("MISSING.txt"));
+            zip.write(("Files missing on the server:\n" + String.join("\n", missing) + "\n").getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+        zip.close();
+    }
+
+    static boolean isCompressed(String contentType) {
+        return contentType != null && COMPRESSED_TYPES.contains(contentType.toLowerCase(Locale.ROOT).split(";")[0].trim());
+    }
+
+    /**
+     * Keeps user-supplied names from creating directories or upsetting Windows extractors.
+     */
+    static String safeName(String name, String fallback) {
+        if (name == null) return fallback;
+        String s = name.replaceAll("[\\\\/:*?\"<>|\\p{Cntrl}]", "_").trim();
+        while (s.startsWith(".")) s = s.substring(1);
+        if (s.length() > 150) s = s.substring(s.length() - 150);
+        return s.isEmpty() ? fallback : s;
+    }
+
+    private long crc(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            crcBuffer.clear();
+            while (ch.read(crcBuffer) >= 0) {
+                crcBuffer.flip();
+                crc.update(crcBuffer);
+                crcBuffer.clear();
+            }
+        }
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,27 @@
+package com.company.ordertracking.web;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+/**
+ * Finished-quantity increment from a shop-floor terminal. seq must increase per terminal; a terminal resends the
+ * same seq until it gets an answer, and a repeat is acknowledged without being counted again.
+ */
+public class ProcessIncrementRequest {
+
+    @NotBlank
+    @Size(max = 64)
+    public String deviceId;
+
+    @NotNull
+    @Min(1)
+    public Long seq;
+
+    @NotNull
+    @Min(1)
+    @Max(100000)
+    public Integer delta;
+}
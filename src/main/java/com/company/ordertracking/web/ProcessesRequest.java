@@ -17,6 +17,8 @@ public class ProcessesRequest {
 
         public Integer targetQuantity;
         public Integer finishedQuantity;
+        // finished quantity the grid displayed; the edit is applied relative to it (see OrderController.mergeProcessRows)
+        public Integer expectedFinishedQuantity;
         public String note;
     }
 }
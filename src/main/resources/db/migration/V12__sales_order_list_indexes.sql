@@ -0,0 +1,12 @@
+-- V12: indexes for the keyset-paginated order list (newest first by created_at, id)
+
+-- 1) created_at must be non-null for a stable (created_at, id) cursor
+UPDATE sales_order SET created_at = CURRENT_TIMESTAMP WHERE created_at IS NULL;
+
+ALTER TABLE sales_order
+  MODIFY COLUMN created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP;
+
+-- 2) composite indexes backing the list filters + sort
+CREATE INDEX idx_sales_order_created ON sales_order(created_at, id);
+CREATE INDEX idx_sales_order_status_created ON sales_order(status, created_at, id);
+CREATE INDEX idx_sales_order_customer_created ON sales_order(customer_name, created_at, id);
@@ -0,0 +1,24 @@
+-- V13: background import jobs (progress is persisted so a restart does not lose it)
+-- The instance running a job refreshes heartbeat_at while it is queued or running (see ImportJobService). A
+-- QUEUED/RUNNING job whose heartbeat is older than app.import.jobs.stale-after-seconds lost its instance and is marked
+-- INTERRUPTED; jobs of other, live instances are left alone.
+CREATE TABLE IF NOT EXISTS import_job (
+  id BIGINT NOT NULL AUTO_INCREMENT,
+  status VARCHAR(20) NOT NULL,
+  source VARCHAR(255) NULL,
+  username VARCHAR(100) NULL,
+  role VARCHAR(50) NULL,
+  ip VARCHAR(64) NULL,
+  created_at DATETIME(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6),
+  started_at DATETIME(6) NULL,
+  finished_at DATETIME(6) NULL,
+  heartbeat_at DATETIME(6) NULL,
+  rows_parsed INT NOT NULL DEFAULT 0,
+  orders_saved INT NOT NULL DEFAULT 0,
+  items_saved INT NOT NULL DEFAULT 0,
+  chunks INT NOT NULL DEFAULT 0,
+  failed_chunks INT NOT NULL DEFAULT 0,
+  errors TEXT NULL,
+  PRIMARY KEY (id),
+  INDEX idx_import_job_status (status)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
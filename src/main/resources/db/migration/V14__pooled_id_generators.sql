@@ -0,0 +1,24 @@
+-- V14: table-backed pooled id allocation for the high-volume insert paths
+-- (sales_order, order_items, warehouse_receipt_log_item, audit_logs).
+-- AUTO_INCREMENT ids force Hibernate to insert row by row; pooled ids let it batch.
+--
+-- Hibernate's pooled optimizer treats next_val as the top of the next block it hands
+-- out, so seed each row with MAX(id) + 50 to keep every new id above the existing ones
+-- (keep this in step with allocationSize on the @TableGenerator mappings).
+CREATE TABLE IF NOT EXISTS id_generator (
+  gen_name VARCHAR(255) NOT NULL,
+  next_val BIGINT NULL,
+  PRIMARY KEY (gen_name)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
+
+INSERT INTO id_generator (gen_name, next_val)
+SELECT 'sales_order', COALESCE(MAX(id), 0) + 50 FROM sales_order;
+
+INSERT INTO id_generator (gen_name, next_val)
+SELECT 'order_items', COALESCE(MAX(id), 0) + 50 FROM order_items;
+
+INSERT INTO id_generator (gen_name, next_val)
+SELECT 'warehouse_receipt_log_item', COALESCE(MAX(id), 0) + 50 FROM warehouse_receipt_log_item;
+
+INSERT INTO id_generator (gen_name, next_val)
+SELECT 'audit_logs', COALESCE(MAX(id), 0) + 50 FROM audit_logs;
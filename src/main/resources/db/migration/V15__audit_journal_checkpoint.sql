@@ -0,0 +1,11 @@
+-- V15: replay position of the local audit journals (see AuditJournal / AuditWriter).
+-- Positions are local to one journal directory, so there is one row per journal, keyed by the id in the directory's
+-- journal.id and created when that journal first starts. A row is updated in the same transaction as the audit_logs
+-- rows it covers.
+CREATE TABLE IF NOT EXISTS audit_journal_checkpoint (
+  journal_id VARCHAR(64) NOT NULL,
+  segment_no BIGINT NOT NULL,
+  segment_offset BIGINT NOT NULL,
+  updated_at DATETIME(6) NOT NULL,
+  PRIMARY KEY (journal_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
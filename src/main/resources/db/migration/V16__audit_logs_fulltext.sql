@@ -0,0 +1,20 @@
+-- V16: FULLTEXT index for the audit log free-text search (q=...), replacing LIKE '%q%' scans.
+-- The index lives on a side table keyed by the audit_logs id: audit_logs gets partitioned in V17, and partitioned
+-- InnoDB tables cannot have FULLTEXT indexes.
+-- content must stay in step with AuditLogText.of.
+
+-- built before the index is added
+CREATE TABLE IF NOT EXISTS audit_logs_text (
+  id BIGINT NOT NULL,
+  created_at DATETIME(6) NOT NULL,
+  content TEXT NULL,
+  PRIMARY KEY (id),
+  INDEX idx_audit_logs_text_created_at (created_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
+
+INSERT INTO audit_logs_text (id, created_at, content)
+SELECT id, created_at, CONCAT_WS(' ', username, action, target, status, ip, details)
+FROM audit_logs;
+
+ALTER TABLE audit_logs_text
+  ADD FULLTEXT INDEX ft_audit_logs_text_content (content);
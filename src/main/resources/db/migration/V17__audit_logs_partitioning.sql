@@ -0,0 +1,43 @@
+-- V17: monthly RANGE partitions on audit_logs.created_at (retention drops whole partitions, see
+-- AuditPartitionMaintenance).
+--
+-- MySQL restrictions that shape this migration:
+--  * every unique key of a partitioned table must contain the partitioning column -> PK becomes (id, created_at)
+--  * partitioned InnoDB tables cannot have FULLTEXT indexes -> the search index is on audit_logs_text (V16)
+
+-- 1) primary key must include the partitioning column
+ALTER TABLE audit_logs
+  DROP PRIMARY KEY,
+  ADD PRIMARY KEY (id, created_at);
+
+-- 2) one partition per month from the oldest row up to three months ahead, plus a catch-all.
+--    Partition bounds must be literals, so the statement is generated and run as a prepared statement.
+SET SESSION group_concat_max_len = 1000000;
+
+SET @audit_first_month = (
+  SELECT CAST(DATE_FORMAT(COALESCE(MIN(created_at), CURRENT_DATE), '%Y-%m-01') AS DATE) FROM audit_logs
+);
+
+SET @audit_partitions = (
+  WITH RECURSIVE months (m) AS (
+    SELECT CAST(@audit_first_month AS DATE)
+    UNION ALL
+    SELECT m + INTERVAL 1 MONTH FROM months
+    WHERE m < CAST(DATE_FORMAT(CURRENT_DATE, '%Y-%m-01') AS DATE) + INTERVAL 3 MONTH
+  )
+  SELECT GROUP_CONCAT(
+           CONCAT('PARTITION p', DATE_FORMAT(m, '%Y%m'),
+                  ' VALUES LESS THAN (''', DATE_FORMAT(m + INTERVAL 1 MONTH, '%Y-%m-%d'), ''')')
+           ORDER BY m SEPARATOR ', ')
+  FROM months
+);
+
+SET @audit_partition_ddl = CONCAT(
+  'ALTER TABLE audit_logs PARTITION BY RANGE COLUMNS (created_at) (',
+  @audit_partitions,
+  ', PARTITION pmax VALUES LESS THAN (MAXVALUE))'
+);
+
+PREPARE audit_partition_stmt FROM @audit_partition_ddl;
+EXECUTE audit_partition_stmt;
+DEALLOCATE PREPARE audit_partition_stmt;
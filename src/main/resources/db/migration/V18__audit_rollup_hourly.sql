@@ -0,0 +1,18 @@
+-- V18: hourly audit counters for GET /api/audit-logs/stats (maintained by AuditWriter, see AuditRollups).
+-- Key columns are NOT NULL: a missing username is stored as ''.
+CREATE TABLE IF NOT EXISTS audit_rollup_hourly (
+  bucket_hour DATETIME NOT NULL,
+  action VARCHAR(80) NOT NULL,
+  username VARCHAR(100) NOT NULL DEFAULT '',
+  status VARCHAR(20) NOT NULL,
+  cnt BIGINT NOT NULL,
+  PRIMARY KEY (bucket_hour, action, username, status),
+  INDEX idx_audit_rollup_action_hour (action, bucket_hour),
+  INDEX idx_audit_rollup_username_hour (username, bucket_hour)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
+
+-- backfill from the rows that exist today
+INSERT INTO audit_rollup_hourly (bucket_hour, action, username, status, cnt)
+SELECT DATE_FORMAT(created_at, '%Y-%m-%d %H:00:00'), action, COALESCE(username, ''), status, COUNT(*)
+FROM audit_logs
+GROUP BY DATE_FORMAT(created_at, '%Y-%m-%d %H:00:00'), action, COALESCE(username, ''), status;
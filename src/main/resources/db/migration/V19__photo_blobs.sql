@@ -0,0 +1,17 @@
+-- V19: content-addressed photo storage (see PhotoStore).
+-- New uploads are stored once per SHA-256 under uploads/ab/cd/<hash>; order_photo.content_hash points at the blob
+-- and photo_blob.ref_count counts those rows. Blobs at zero references are removed by the photo GC after a grace
+-- period. Rows from before V19 keep content_hash NULL and their own flat file.
+CREATE TABLE IF NOT EXISTS photo_blob (
+  hash VARCHAR(64) NOT NULL,
+  size BIGINT NOT NULL,
+  ref_count INT NOT NULL,
+  created_at DATETIME NOT NULL,
+  updated_at DATETIME NOT NULL,
+  PRIMARY KEY (hash),
+  INDEX idx_photo_blob_unreferenced (ref_count, updated_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
+
+ALTER TABLE order_photo
+  ADD COLUMN content_hash VARCHAR(64) NULL AFTER stored_filename,
+  ADD INDEX idx_order_photo_content_hash (content_hash);
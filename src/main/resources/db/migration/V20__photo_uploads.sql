@@ -0,0 +1,18 @@
+-- V20: resumable chunked photo uploads (see PhotoUploads). The bytes live in <upload.dir>/.partial/<id>.part;
+-- received_chunks is a bitmap (bit i = chunk i written and fsynced). photo_id is set once the upload is completed.
+CREATE TABLE IF NOT EXISTS photo_upload (
+  id VARCHAR(36) NOT NULL,
+  order_id BIGINT NOT NULL,
+  original_filename VARCHAR(255) NOT NULL,
+  content_type VARCHAR(100) NOT NULL,
+  total_size BIGINT NOT NULL,
+  chunk_size INT NOT NULL,
+  received_chunks VARBINARY(1024) NOT NULL,
+  username VARCHAR(100) NULL,
+  photo_id BIGINT NULL,
+  created_at DATETIME(6) NOT NULL,
+  updated_at DATETIME(6) NOT NULL,
+  PRIMARY KEY (id),
+  INDEX idx_photo_upload_updated_at (updated_at),
+  CONSTRAINT fk_photo_upload_order FOREIGN KEY (order_id) REFERENCES sales_order (id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
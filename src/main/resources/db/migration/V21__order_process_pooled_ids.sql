@@ -0,0 +1,4 @@
+-- V21: pooled ids for order_process (same scheme as V14) so the process grid merge can
+-- batch its INSERTs. Seeded at MAX(id) + 50, in step with allocationSize on OrderProcess.
+INSERT INTO id_generator (gen_name, next_val)
+SELECT 'order_process', COALESCE(MAX(id), 0) + 50 FROM order_process;
@@ -0,0 +1,4 @@
+-- V22: pooled ids for material_assessment (same scheme as V14) so the BOM merge can
+-- batch its INSERTs. Seeded at MAX(id) + 50, in step with allocationSize on MaterialAssessment.
+INSERT INTO id_generator (gen_name, next_val)
+SELECT 'material_assessment', COALESCE(MAX(id), 0) + 50 FROM material_assessment;
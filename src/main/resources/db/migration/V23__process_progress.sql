@@ -0,0 +1,40 @@
+-- V23: shop-floor progress increments (see ProcessProgress).
+-- Highest sequence number applied per terminal, so a resent increment is acknowledged but not counted twice.
+CREATE TABLE IF NOT EXISTS process_progress_device (
+  device_id VARCHAR(64) NOT NULL,
+  last_seq BIGINT NOT NULL,
+  updated_at DATETIME(6) NOT NULL,
+  PRIMARY KEY (device_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
+
+-- Every (terminal, seq) counted into order_process, written in the same flush transaction. Flushes and journal
+-- replays skip pairs that are already here, so an increment resent to another instance after a lease handover is not
+-- counted again when the first instance replays its journal. Pruned after app.progress.seq-retention-days.
+CREATE TABLE IF NOT EXISTS process_progress_seq (
+  device_id VARCHAR(64) NOT NULL,
+  seq BIGINT NOT NULL,
+  created_at DATETIME(6) NOT NULL,
+  PRIMARY KEY (device_id, seq),
+  INDEX idx_process_progress_seq_created (created_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
+
+-- Last local journal segment whose increments are in order_process. Segment numbers are local to one journal
+-- directory, so there is one row per journal (journal.id), created when that journal first starts. A row is updated
+-- in the same transaction as the order_process rows it covers.
+CREATE TABLE IF NOT EXISTS process_progress_checkpoint (
+  journal_id VARCHAR(64) NOT NULL,
+  segment_no BIGINT NOT NULL,
+  updated_at DATETIME(6) NOT NULL,
+  PRIMARY KEY (journal_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
+
+-- Ingestion runs on one instance at a time. The instance named in owner ingests increments and extends lease_until
+-- in every flush transaction; the others stand by until it is released (NULL) or has expired.
+CREATE TABLE IF NOT EXISTS process_progress_lease (
+  id TINYINT NOT NULL,
+  owner VARCHAR(64) NULL,
+  lease_until DATETIME(6) NULL,
+  PRIMARY KEY (id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
+
+INSERT INTO process_progress_lease (id, owner, lease_until) VALUES (1, NULL, NULL);
@@ -0,0 +1,11 @@
+-- V24: running received quantity per order item (see ReceiptCounters). Maintained in the same transaction
+-- that writes warehouse_receipt_log_item, so the receipt stats no longer need to sum the log.
+ALTER TABLE order_items ADD COLUMN received_qty INT NOT NULL DEFAULT 0;
+
+UPDATE order_items oi
+JOIN (
+  SELECT order_item_id, SUM(qty) AS s
+  FROM warehouse_receipt_log_item
+  GROUP BY order_item_id
+) r ON r.order_item_id = oi.id
+SET oi.received_qty = r.s;
@@ -0,0 +1,68 @@
+package com.company.ordertracking.audit;
+
+import com.company.ordertracking.entity.AuditLog;
+import com.company.ordertracking.repo.AuditLogRepository;
+import com.company.ordertracking.repo.SalesOrderRepository;
+import com.company.ordertracking.web.OrderController;
+import com.company.ordertracking.web.OrderRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Audit entries written inside a business transaction only reach the log when that transaction commits.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class AuditLogServiceTest {
+
+    @Autowired
+    private OrderController orders;
+
+    @Autowired
+    private SalesOrderRepository orderRepo;
+
+    @Autowired
+    private AuditLogRepository auditRepo;
+
+    @BeforeEach
+    void setUp() {
+        orderRepo.deleteAll();
+        auditRepo.deleteAll();
+    }
+
+    @Test
+    void rolledBackCreateLeavesNoAuditRow() {
+        orders.create(order("SC-1"), "GM", new MockHttpServletRequest());
+        assertThat(createOrderEntries()).hasSize(1);
+
+        // the duplicate order_no only fails when the INSERT is flushed at commit
+        assertThatThrownBy(() -> orders.create(order("SC-1"), "GM", new MockHttpServletRequest()))
+                .isInstanceOf(DataIntegrityViolationException.class);
+
+        assertThat(orderRepo.count()).isEqualTo(1);
+        assertThat(createOrderEntries()).hasSize(1);
+    }
+
+    private List<AuditLog> createOrderEntries() {
+        return auditRepo.findAll().stream()
+                .filter(a -> "CREATE_ORDER".equals(a.getAction()))
+                .toList();
+    }
+
+    private static OrderRequest order(String orderNo) {
+        OrderRequest req = new OrderRequest();
+        req.orderNo = orderNo;
+        req.customerName = "Customer";
+        return req;
+    }
+}
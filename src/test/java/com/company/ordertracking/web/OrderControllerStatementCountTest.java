@@ -0,0 +1,206 @@
+package com.company.ordertracking.web;
+
+import com.company.ordertracking.entity.MaterialAssessment;
+import com.company.ordertracking.entity.OrderItem;
+import com.company.ordertracking.entity.OrderProcess;
+import com.company.ordertracking.entity.ProductionPlan;
+import com.company.ordertracking.entity.Role;
+import com.company.ordertracking.entity.SalesOrder;
+import com.company.ordertracking.entity.Shipment;
+import com.company.ordertracking.entity.WarehouseReceipt;
+import com.company.ordertracking.imports.ImportJobService;
+import com.company.ordertracking.repo.MaterialAssessmentRepository;
+import com.company.ordertracking.repo.OrderProcessRepository;
+import com.company.ordertracking.repo.ProductionPlanRepository;
+import com.company.ordertracking.repo.SalesOrderRepository;
+import com.company.ordertracking.repo.ShipmentRepository;
+import com.company.ordertracking.repo.WarehouseReceiptRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The order list builds its responses with batch loaders, so the number of JDBC statements must not grow
+ * with the number of orders (no N+1), only with the number of id chunks.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class OrderControllerStatementCountTest {
+
+    private static final int N = 10;
+
+    @Autowired
+    private OrderController controller;
+
+    @Autowired
+    private SalesOrderRepository orderRepo;
+
+    @Autowired
+    private ProductionPlanRepository planRepo;
+
+    @Autowired
+    private MaterialAssessmentRepository materialRepo;
+
+    @Autowired
+    private OrderProcessRepository processRepo;
+
+    @Autowired
+    private WarehouseReceiptRepository receiptRepo;
+
+    @Autowired
+    private ShipmentRepository shipmentRepo;
+
+    @Autowired
+    private EntityManagerFactory emf;
+
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    // its heartbeat runs on the scheduler and would show up in the (session factory wide) statistics
+    @MockitoBean
+    private ImportJobService importJobService;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        planRepo.deleteAll();
+        materialRepo.deleteAll();
+        processRepo.deleteAll();
+        receiptRepo.deleteAll();
+        shipmentRepo.deleteAll();
+        orderRepo.deleteAll();
+        statistics = emf.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void listAllUsesTheSameNumberOfStatementsForNAnd2NOrders() {
+        createOrders(0, N);
+        long forN = countStatements();
+
+        createOrders(N, N);
+        long for2N = countStatements();
+
+        assertThat(statistics.isStatisticsEnabled()).isTrue();
+        assertThat(forN).isPositive();
+        assertThat(for2N).isEqualTo(forN);
+    }
+
+    @Test
+    void listAllAddsOneItemQueryPerChunkOfOrderIds() {
+        createOrders(0, OrderController.ID_CHUNK_SIZE);
+        long oneChunk = countStatements();
+
+        createOrders(OrderController.ID_CHUNK_SIZE, 1);
+        long twoChunks = countStatements();
+
+        assertThat(twoChunks).isEqualTo(oneChunk + 1);
+    }
+
+    @Test
+    void workflowLoadersUseTheSameNumberOfStatementsForNAnd2NOrders() {
+        addWorkflow(createOrders(0, N));
+        long forN = countWorkflowStatements();
+
+        addWorkflow(createOrders(N, N));
+        long for2N = countWorkflowStatements();
+
+        assertThat(forN).isPositive();
+        assertThat(for2N).isEqualTo(forN);
+    }
+
+    private long countWorkflowStatements() {
+        return new TransactionTemplate(txManager).execute(tx -> {
+            List<SalesOrder> orders = orderRepo.findAll().stream()
+                    .sorted(Comparator.comparing(SalesOrder::getId))
+                    .toList();
+            statistics.clear();
+            List<OrderResponse> responses = controller.toResponses(orders, Role.GM, true);
+            long count = statistics.getPrepareStatementCount();
+            // every section came back filled, so each loader ran
+            assertThat(responses).allSatisfy(o -> {
+                assertThat(o.items).hasSize(3);
+                assertThat(o.plan).isNotNull();
+                assertThat(o.materials).hasSize(2);
+                assertThat(o.processes).hasSize(2);
+                assertThat(o.warehouseReceipt).isNotNull();
+                assertThat(o.shipment).isNotNull();
+            });
+            return count;
+        });
+    }
+
+    private long countStatements() {
+        statistics.clear();
+        List<OrderResponse> orders = controller.listAll("GM");
+        long count = statistics.getPrepareStatementCount();
+        // every order came back with its items, so they were loaded rather than skipped
+        assertThat(orders).allSatisfy(o -> assertThat(o.items).hasSize(3));
+        return count;
+    }
+
+    private List<SalesOrder> createOrders(int from, int count) {
+        List<SalesOrder> orders = new ArrayList<>();
+        for (int i = from; i < from + count; i++) {
+            SalesOrder so = new SalesOrder();
+            so.setOrderNo("SC-" + i);
+            so.setCustomerName("Customer " + i);
+            List<OrderItem> items = new ArrayList<>();
+            for (int k = 0; k < 3; k++) {
+                OrderItem it = new OrderItem();
+                it.setProductName("Product " + k);
+                it.setQuantity(k + 1);
+                it.setOrder(so);
+                items.add(it);
+            }
+            so.setItems(items);
+            orders.add(so);
+        }
+        return orderRepo.saveAll(orders);
+    }
+
+    private void addWorkflow(List<SalesOrder> orders) {
+        for (SalesOrder so : orders) {
+            ProductionPlan plan = new ProductionPlan();
+            plan.setPlannedShipDate(LocalDate.of(2024, 6, 1));
+            plan.setOrder(so);
+            planRepo.save(plan);
+            for (int k = 0; k < 2; k++) {
+                MaterialAssessment m = new MaterialAssessment();
+                m.setMaterialName("Material " + k);
+                m.setProcurementType("PURCHASE");
+                m.setOrder(so);
+                materialRepo.save(m);
+                OrderProcess p = new OrderProcess();
+                p.setProcessName("Process " + k);
+                p.setTargetQuantity(10);
+                p.setFinishedQuantity(0);
+                p.setOrder(so);
+                processRepo.save(p);
+            }
+            WarehouseReceipt wr = new WarehouseReceipt();
+            wr.setReceivedBy("warehouse");
+            wr.setOrder(so);
+            receiptRepo.save(wr);
+            Shipment sh = new Shipment();
+            sh.setPlannedShipDate(LocalDate.of(2024, 6, 1));
+            sh.setOrder(so);
+            shipmentRepo.save(sh);
+        }
+    }
+}
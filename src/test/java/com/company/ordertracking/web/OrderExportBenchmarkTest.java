@@ -0,0 +1,85 @@
+package com.company.ordertracking.web;
+
+import com.company.ordertracking.entity.OrderStatus;
+import com.company.ordertracking.repo.SalesOrderItemRow;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Item export of 100k rows: a plain XSSFWorkbook (whole sheet in memory) against the SXSSF row window the
+ * controller uses. Heap is what the workbook still holds once every row is written, after a GC; time covers
+ * writing the rows and the file. Off by default (a couple of minutes, ~1 GB heap for the XSSF run):
+ * <pre>mvn -B test -Dtest=OrderExportBenchmarkTest -Dbenchmark=true</pre>
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class OrderExportBenchmarkTest {
+
+    private static final int ROWS = 100_000;
+
+    @Test
+    void streamingExportKeepsHeapFlatWhereXssfGrowsWithTheRows() throws Exception {
+        Result xssf = run("XSSFWorkbook", new XSSFWorkbook());
+        SXSSFWorkbook streaming = new SXSSFWorkbook(OrderExportController.XLSX_ROW_WINDOW);
+        streaming.setCompressTempFiles(true);
+        Result sxssf = run("SXSSFWorkbook(" + OrderExportController.XLSX_ROW_WINDOW + ")", streaming);
+
+        assertThat(sxssf.heapBytes).isLessThan(xssf.heapBytes / 10);
+    }
+
+    private static Result run(String name, Workbook wb) throws Exception {
+        long heapBefore = usedHeap();
+        long start = System.nanoTime();
+        long heap;
+        try {
+            OrderExportController.writeItemRows(wb, rows(ROWS), true,
+                    OrderExportController.XLSX_MAX_ROWS_PER_SHEET);
+            heap = usedHeap() - heapBefore;
+            wb.write(OutputStream.nullOutputStream());
+        } finally {
+            if (wb instanceof SXSSFWorkbook s) s.dispose();
+            wb.close();
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.printf("%-22s %,d rows: %,d ms, %,d KB retained heap%n", name, ROWS, millis, heap / 1024);
+        return new Result(millis, heap);
+    }
+
+    private record Result(long millis, long heapBytes) {
+    }
+
+    private static Iterator<SalesOrderItemRow> rows(int count) {
+        LocalDateTime createdAt = LocalDateTime.of(2024, 1, 1, 8, 0);
+        return new Iterator<>() {
+            private int i;
+
+            @Override
+            public boolean hasNext() {
+                return i < count;
+            }
+
+            @Override
+            public SalesOrderItemRow next() {
+                int n = i++;
+                return new SalesOrderItemRow((long) n, "SC-" + n, OrderStatus.DRAFT, "Customer " + n, "contact",
+                        "USD", "T/T", BigDecimal.valueOf(100), null, null, createdAt,
+                        "Product " + n, "spec", 1, 9.5, null);
+            }
+        };
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        Runtime rt = Runtime.getRuntime();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
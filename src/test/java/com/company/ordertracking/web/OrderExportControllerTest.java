@@ -0,0 +1,108 @@
+package com.company.ordertracking.web;
+
+import com.company.ordertracking.entity.OrderStatus;
+import com.company.ordertracking.repo.SalesOrderItemRow;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class OrderExportControllerTest {
+
+    private static final int LARGE_EXPORT_ROWS = 100_000;
+
+    @Test
+    void writesOneHundredThousandRowsWithinTheRowWindow() {
+        assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+            SXSSFWorkbook wb = new SXSSFWorkbook(OrderExportController.XLSX_ROW_WINDOW);
+            wb.setCompressTempFiles(true);
+            try {
+                long heapBefore = usedHeap();
+                OrderExportController.writeItemRows(wb, rows(LARGE_EXPORT_ROWS), true,
+                        OrderExportController.XLSX_MAX_ROWS_PER_SHEET);
+
+                Sheet sheet = wb.getSheetAt(0);
+                assertThat(wb.getNumberOfSheets()).isEqualTo(1);
+                assertThat(sheet.getLastRowNum()).isEqualTo(LARGE_EXPORT_ROWS);
+                // everything but the last window has been flushed to the temp file
+                int inMemory = 0;
+                for (int r = 0; r <= sheet.getLastRowNum(); r++) {
+                    if (sheet.getRow(r) != null) inMemory++;
+                }
+                assertThat(inMemory).isLessThanOrEqualTo(OrderExportController.XLSX_ROW_WINDOW);
+                assertThat(usedHeap() - heapBefore).isLessThan(64L * 1024 * 1024);
+
+                wb.write(OutputStream.nullOutputStream());
+            } finally {
+                wb.dispose();
+                wb.close();
+            }
+        });
+    }
+
+    @Test
+    void continuesOnANewSheetAtTheRowLimit() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SXSSFWorkbook wb = new SXSSFWorkbook(OrderExportController.XLSX_ROW_WINDOW);
+        try {
+            // 300 rows per sheet = header + 299 items, so 1000 items need 4 sheets
+            OrderExportController.writeItemRows(wb, rows(1000), true, 300);
+            wb.write(out);
+        } finally {
+            wb.dispose();
+            wb.close();
+        }
+
+        try (XSSFWorkbook read = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+            assertThat(read.getNumberOfSheets()).isEqualTo(4);
+            assertThat(read.getSheetName(0)).isEqualTo("Orders");
+            assertThat(read.getSheetName(3)).isEqualTo("Orders (4)");
+            int items = 0;
+            for (int s = 0; s < read.getNumberOfSheets(); s++) {
+                Sheet sheet = read.getSheetAt(s);
+                assertThat(sheet.getRow(0).getCell(0).getStringCellValue()).isEqualTo("Order ID");
+                assertThat(sheet.getLastRowNum()).isLessThan(300);
+                items += sheet.getLastRowNum();
+            }
+            assertThat(items).isEqualTo(1000);
+            assertThat(read.getSheetAt(3).getRow(1).getCell(1).getStringCellValue()).isEqualTo("SC-897");
+        }
+    }
+
+    private static Iterator<SalesOrderItemRow> rows(int count) {
+        LocalDateTime createdAt = LocalDateTime.of(2024, 1, 1, 8, 0);
+        return new Iterator<>() {
+            private int i;
+
+            @Override
+            public boolean hasNext() {
+                return i < count;
+            }
+
+            @Override
+            public SalesOrderItemRow next() {
+                int n = i++;
+                return new SalesOrderItemRow((long) n, "SC-" + n, OrderStatus.DRAFT, "Customer " + n, "contact",
+                        "USD", "T/T", BigDecimal.valueOf(100), null, null, createdAt,
+                        "Product " + n, "spec", 1, 9.5, null);
+            }
+        };
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        Runtime rt = Runtime.getRuntime();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
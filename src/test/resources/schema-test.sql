@@ -0,0 +1,55 @@
+-- Tables the application reads with native SQL only (no entity, so ddl-auto does not create them).
+CREATE TABLE IF NOT EXISTS audit_journal_checkpoint (
+  journal_id VARCHAR(64) NOT NULL,
+  segment_no BIGINT NOT NULL,
+  segment_offset BIGINT NOT NULL,
+  updated_at TIMESTAMP(6) NOT NULL,
+  PRIMARY KEY (journal_id)
+);
+
+CREATE TABLE IF NOT EXISTS audit_rollup_hourly (
+  bucket_hour TIMESTAMP NOT NULL,
+  action VARCHAR(80) NOT NULL,
+  username VARCHAR(100) NOT NULL DEFAULT '',
+  status VARCHAR(20) NOT NULL,
+  cnt BIGINT NOT NULL,
+  PRIMARY KEY (bucket_hour, action, username, status)
+);
+
+CREATE TABLE IF NOT EXISTS photo_blob (
+  hash VARCHAR(64) NOT NULL,
+  size BIGINT NOT NULL,
+  ref_count INT NOT NULL,
+  created_at DATETIME NOT NULL,
+  updated_at DATETIME NOT NULL,
+  PRIMARY KEY (hash)
+);
+
+CREATE TABLE IF NOT EXISTS process_progress_device (
+  device_id VARCHAR(64) NOT NULL,
+  last_seq BIGINT NOT NULL,
+  updated_at TIMESTAMP(6) NOT NULL,
+  PRIMARY KEY (device_id)
+);
+
+CREATE TABLE IF NOT EXISTS process_progress_seq (
+  device_id VARCHAR(64) NOT NULL,
+  seq BIGINT NOT NULL,
+  created_at TIMESTAMP(6) NOT NULL,
+  PRIMARY KEY (device_id, seq)
+);
+
+CREATE TABLE IF NOT EXISTS process_progress_checkpoint (
+  journal_id VARCHAR(64) NOT NULL,
+  segment_no BIGINT NOT NULL,
+  updated_at TIMESTAMP(6) NOT NULL,
+  PRIMARY KEY (journal_id)
+);
+
+CREATE TABLE IF NOT EXISTS process_progress_lease (
+  id TINYINT NOT NULL,
+  owner VARCHAR(64) NULL,
+  lease_until TIMESTAMP(6) NULL,
+  PRIMARY KEY (id)
+);
+MERGE INTO process_progress_lease KEY(id) VALUES (1, NULL, NULL);